@@ -0,0 +1,160 @@
+package com.buuz135.dysoncubeproject.benchmark;
+
+import com.buuz135.dysoncubeproject.network.DysonSphereCodec;
+import com.buuz135.dysoncubeproject.network.SphereIdTable;
+import com.buuz135.dysoncubeproject.network.SpherePayloadWriter;
+import com.buuz135.dysoncubeproject.world.DysonSphereProgressSavedData;
+import com.buuz135.dysoncubeproject.world.DysonSphereStructure;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Compares the binary sphere sync payload with the NBT payload it replaced, bytes on the wire and encode and decode
+ * time of a full sync. Both are measured as Titanium sends them, a compound tag written with
+ * {@link FriendlyByteBuf#writeNbt}.
+ */
+public class SphereCodecBenchmark {
+
+    private static final int[] SPHERE_COUNTS = {10, 1_000, 50_000};
+    private static final UUID PLAYER = new UUID(0, 1);
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        System.out.printf("%-8s %-18s %12s %14s %14s%n", "spheres", "format", "bytes", "encode us", "decode us");
+        for (int count : SPHERE_COUNTS) {
+            var spheres = createSpheres(count);
+            int iterations = Math.max(20, 2_000_000 / count);
+
+            byte[] nbt = writeTag(encodeNbt(spheres));
+            print(count, "nbt", nbt.length,
+                    time(iterations, () -> writeTag(encodeNbt(spheres))),
+                    time(iterations, () -> decodeNbt(nbt)));
+
+            var first = encodeBinary(spheres, new BitSet());
+            print(count, "binary first sync", first.length,
+                    time(iterations, () -> encodeBinary(spheres, new BitSet())),
+                    time(iterations, () -> decodeBinary(first, new Int2ObjectOpenHashMap<>())));
+
+            var known = new BitSet();
+            known.set(0, count);
+            var steady = encodeBinary(spheres, known);
+            // The client learnt the ids from an earlier sync, indexes follow the order they were declared in
+            var knownIds = new Int2ObjectOpenHashMap<String>();
+            spheres.keySet().forEach(id -> knownIds.put(knownIds.size(), id));
+            print(count, "binary known ids", steady.length,
+                    time(iterations, () -> encodeBinary(spheres, known)),
+                    time(iterations, () -> decodeBinary(steady, knownIds)));
+        }
+        if (sink == 42) System.out.println();
+    }
+
+    private static Map<String, DysonSphereStructure> createSpheres(int count) {
+        var random = new Random(count);
+        var spheres = new LinkedHashMap<String, DysonSphereStructure>();
+        for (int i = 0; i < count; i++) {
+            int beams = random.nextInt(1_000_000);
+            spheres.put(new UUID(random.nextLong(), random.nextLong()).toString(), new DysonSphereStructure(beams, beams * random.nextInt(7)));
+        }
+        return spheres;
+    }
+
+    /**
+     * The tag the sync manager sent before the binary format, every field of every sphere plus the player's subscription.
+     */
+    private static CompoundTag encodeNbt(Map<String, DysonSphereStructure> spheres) {
+        var spheresTag = new CompoundTag();
+        spheres.forEach((id, sphere) -> {
+            var delta = new CompoundTag();
+            delta.putLong("version", sphere.getVersion());
+            delta.putInt("beams", sphere.getBeams());
+            delta.putInt("solarPanels", sphere.getSolarPanels());
+            delta.putLong("storedPower", sphere.getStoredPower());
+            delta.putLong("lastConsumedPower", sphere.getLastConsumedPower());
+            spheresTag.put(id, delta);
+        });
+        var subscribedPlayers = new CompoundTag();
+        subscribedPlayers.putString(PLAYER.toString(), spheres.keySet().iterator().next());
+        var tag = new CompoundTag();
+        tag.put("spheres", spheresTag);
+        tag.put("subscribedPlayers", subscribedPlayers);
+        return tag;
+    }
+
+    private static void decodeNbt(byte[] bytes) {
+        var tag = readTag(bytes);
+        var target = new DysonSphereProgressSavedData();
+        var spheresTag = tag.getCompound("spheres");
+        for (String id : spheresTag.getAllKeys()) {
+            var delta = spheresTag.getCompound(id);
+            var sphere = target.getOrCreateSphere(id);
+            sphere.setBeams(delta.getInt("beams"));
+            sphere.setSolarPanels(delta.getInt("solarPanels"));
+            sink += delta.getLong("version") + delta.getLong("storedPower") + delta.getLong("lastConsumedPower");
+        }
+        var subscribedPlayers = tag.getCompound("subscribedPlayers");
+        target.subscribe(PLAYER, subscribedPlayers.getString(PLAYER.toString()));
+    }
+
+    /**
+     * @return the declarations message, if any, followed by the payload message, as they go on the wire
+     */
+    private static byte[] encodeBinary(Map<String, DysonSphereStructure> spheres, BitSet knownIds) {
+        var writer = new SpherePayloadWriter(new SphereIdTable(), knownIds);
+        spheres.forEach((id, sphere) -> writer.addSphere(id, DysonSphereCodec.encodeSphere(sphere, DysonSphereStructure.ALL_CHANGED)));
+        writer.setSubscription(spheres.keySet().iterator().next());
+        var declarations = writer.getDeclarations();
+        var payload = writeTag(DysonSphereCodec.wrap(writer.getPayload()));
+        if (declarations == null) return payload;
+        var declarationsMessage = writeTag(DysonSphereCodec.wrap(declarations));
+        var bytes = new byte[declarationsMessage.length + payload.length];
+        System.arraycopy(declarationsMessage, 0, bytes, 0, declarationsMessage.length);
+        System.arraycopy(payload, 0, bytes, declarationsMessage.length, payload.length);
+        return bytes;
+    }
+
+    private static void decodeBinary(byte[] bytes, Int2ObjectMap<String> ids) {
+        var buf = new FriendlyByteBuf(Unpooled.wrappedBuffer(bytes));
+        var target = new DysonSphereProgressSavedData();
+        var first = DysonSphereCodec.unwrap(buf.readNbt());
+        if (buf.isReadable()) {
+            DysonSphereCodec.readDeclarations(first, ids);
+            first = DysonSphereCodec.unwrap(buf.readNbt());
+        }
+        if (!DysonSphereCodec.readPayload(first, ids, target, PLAYER)) throw new IllegalStateException("Unknown sphere id");
+        sink += target.getSpheres().size();
+    }
+
+    private static byte[] writeTag(CompoundTag tag) {
+        var buf = new FriendlyByteBuf(Unpooled.buffer());
+        buf.writeNbt(tag);
+        return DysonSphereCodec.toBytes(buf);
+    }
+
+    private static CompoundTag readTag(byte[] bytes) {
+        return new FriendlyByteBuf(Unpooled.wrappedBuffer(bytes)).readNbt();
+    }
+
+    /**
+     * @return the average time of one call in microseconds, after running the same number of calls to warm up
+     */
+    private static double time(int iterations, Runnable runnable) {
+        for (int i = 0; i < iterations; i++) runnable.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) runnable.run();
+        return (System.nanoTime() - start) / 1_000D / iterations;
+    }
+
+    private static void print(int count, String format, int bytes, double encode, double decode) {
+        System.out.printf("%-8d %-18s %12d %14.1f %14.1f%n", count, format, bytes, encode, decode);
+    }
+}
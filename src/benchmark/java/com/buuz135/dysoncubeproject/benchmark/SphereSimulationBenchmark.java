@@ -0,0 +1,84 @@
+package com.buuz135.dysoncubeproject.benchmark;
+
+import com.buuz135.dysoncubeproject.Config;
+import com.buuz135.dysoncubeproject.world.DysonSphereSimulation;
+
+import java.util.Random;
+
+/**
+ * Server tick cost of 100k spheres, ticked eagerly on one thread or split across the fork join pool, against lazy
+ * updates where only the spheres something reads are brought up to date. A fraction of the spheres have ray
+ * receivers extracting power every tick, as they would in a world.
+ */
+public class SphereSimulationBenchmark {
+
+    private static final int SPHERES = 100_000;
+    private static final double[] ACTIVE_FRACTIONS = {0.01, 0.1, 1};
+    private static final int WARMUP_TICKS = 2_000;
+    private static final int TICKS = 2_000;
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        int parallelThreshold = Config.SIMULATION_PARALLEL_THRESHOLD;
+        System.out.printf("%-8s %-10s %-20s %12s%n", "spheres", "active", "mode", "us per tick");
+        for (double fraction : ACTIVE_FRACTIONS) {
+            int[] active = pickActive(fraction);
+            Config.SIMULATION_PARALLEL_THRESHOLD = Integer.MAX_VALUE;
+            print(fraction, "eager serial", run(true, active));
+            Config.SIMULATION_PARALLEL_THRESHOLD = parallelThreshold;
+            print(fraction, "eager fork join", run(true, active));
+            Config.SIMULATION_PARALLEL_THRESHOLD = 8_192;
+            print(fraction, "eager fork join 8k", run(true, active));
+            Config.SIMULATION_PARALLEL_THRESHOLD = parallelThreshold;
+            print(fraction, "lazy", run(false, active));
+        }
+        if (sink == 42) System.out.println();
+    }
+
+    private static int[] pickActive(double fraction) {
+        var random = new Random(SPHERES);
+        int[] active = new int[(int) (SPHERES * fraction)];
+        for (int i = 0; i < active.length; i++) {
+            active[i] = fraction >= 1 ? i : random.nextInt(SPHERES);
+        }
+        return active;
+    }
+
+    /**
+     * @return the average time of one server tick in microseconds
+     */
+    private static double run(boolean eager, int[] active) {
+        long[] tick = {0};
+        var simulation = new DysonSphereSimulation(() -> tick[0]);
+        var random = new Random(0);
+        // Grown one sphere at a time, as the server does when spheres are attached to their handle's slot
+        for (int index = 0; index < SPHERES; index++) {
+            simulation.ensureSize(index + 1);
+            int beams = random.nextInt(10_000);
+            simulation.setBeams(index, beams);
+            simulation.setSolarPanels(index, beams * random.nextInt(7));
+        }
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            ++tick[0];
+            tick(simulation, eager, active);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < TICKS; i++) {
+            ++tick[0];
+            tick(simulation, eager, active);
+        }
+        return (System.nanoTime() - start) / 1_000D / TICKS;
+    }
+
+    private static void tick(DysonSphereSimulation simulation, boolean eager, int[] active) {
+        if (eager) simulation.tick();
+        for (int index : active) {
+            sink += simulation.extract(index, Config.RAY_RECEIVER_EXTRACT_POWER);
+        }
+    }
+
+    private static void print(double fraction, String mode, double micros) {
+        System.out.printf("%-8d %-10s %-20s %12.1f%n", SPHERES, (fraction * 100) + "%", mode, micros);
+    }
+}
@@ -25,6 +25,21 @@ public class Config {
     @ConfigVal.InRangeInt(min = 1)
     public static int RAY_RECEIVER_EXTRACT_POWER = 50_000_000;
 
+    @ConfigVal(comment = "How a sphere splits its power when its ray receivers ask for more than it has: ROUND_ROBIN shares it equally, PROPORTIONAL by how much each receiver asks for and PRIORITY fills receivers with a stronger redstone signal first")
+    public static String RAY_RECEIVER_DISTRIBUTION = "ROUND_ROBIN";
+
+    @ConfigVal(comment = "How long, in ticks, ray receivers and ejectors trust a cached sky check before checking the sky light again, block changes in the column clear it sooner")
+    @ConfigVal.InRangeInt(min = 1)
+    public static int SKY_VISIBILITY_CACHE_TICKS = 100;
+
+    @ConfigVal(comment = "Ray receivers holding less power than this push it to the block below every few ticks instead of every tick")
+    @ConfigVal.InRangeInt(min = 0)
+    public static int RAY_RECEIVER_BATCH_THRESHOLD = 100_000;
+
+    @ConfigVal(comment = "How often, in ticks, a ray receiver holding less than the batch threshold pushes its power")
+    @ConfigVal.InRangeInt(min = 1)
+    public static int RAY_RECEIVER_BATCH_INTERVAL = 10;
+
     @ConfigVal(comment = "The power that the ray receiver buffer has")
     @ConfigVal.InRangeInt(min = 1)
     public static int RAY_RECEIVER_POWER_BUFFER = 100_000_000;
@@ -36,4 +51,38 @@ public class Config {
     @ConfigVal(comment = "The power that the em railejector consumes each tick per sent item")
     @ConfigVal.InRangeInt(min = 1)
     public static int RAIL_EJECTOR_CONSUME = 40;
+
+    @ConfigVal(comment = "How much the power consumed by a sphere has to change, as a fraction of the last synced value, before it's synced to clients again")
+    @ConfigVal.InRangeDouble(min = 0, max = 1)
+    public static double SYNC_CONSUMPTION_TOLERANCE = 0.05;
+
+    @ConfigVal(comment = "How often, in ticks, a sphere shown in an open menu can be synced to the player")
+    @ConfigVal.InRangeInt(min = 1)
+    public static int SYNC_MENU_INTERVAL = 2;
+
+    @ConfigVal(comment = "How often, in ticks, a fast changing sphere that the player only sees in the sky is synced, slow changing spheres are synced sooner")
+    @ConfigVal.InRangeInt(min = 1)
+    public static int SYNC_SKY_INTERVAL = 100;
+
+    @ConfigVal(comment = "How many bytes of sphere updates each player can receive per second, sky updates are delayed once it runs out")
+    @ConfigVal.InRangeInt(min = 1)
+    public static int SYNC_PLAYER_BYTES_PER_SECOND = 4096;
+
+    @ConfigVal(comment = "Keep players updated about the sphere they are subscribed to so it renders in the sky, when disabled spheres are only synced while a menu showing them is open")
+    public static boolean SYNC_SUBSCRIBED_SPHERES = true;
+
+    @ConfigVal(comment = "How long, in ticks, a sphere without linked blocks in loaded chunks or online subscribers is kept in memory before it's unloaded")
+    @ConfigVal.InRangeInt(min = 1)
+    public static int SPHERE_UNLOAD_TIMEOUT = 6000;
+
+    @ConfigVal(comment = "How often, in ticks, the sphere journal is forced to disk, changes made since then can be lost if the machine loses power or the OS crashes. Lower values cost more disk syncs")
+    @ConfigVal.InRangeInt(min = 1)
+    public static int JOURNAL_FORCE_INTERVAL = 20;
+
+    @ConfigVal(comment = "Update the power of every sphere every tick instead of only when something reads it, useful for tools that inspect sphere state directly")
+    public static boolean SIMULATION_EAGER_TICKING = false;
+
+    @ConfigVal(comment = "How many spheres are ticked per thread when eager ticking, more spheres than this are split across the common fork join pool")
+    @ConfigVal.InRangeInt(min = 1024)
+    public static int SIMULATION_PARALLEL_THRESHOLD = 50_000;
 }
@@ -4,10 +4,16 @@ import com.buuz135.dysoncubeproject.block.tile.EMRailEjectorBlockEntity;
 import com.buuz135.dysoncubeproject.block.tile.RayReceiverBlockEntity;
 import com.buuz135.dysoncubeproject.client.ClientSetup;
 import com.buuz135.dysoncubeproject.datagen.*;
+import com.buuz135.dysoncubeproject.network.ClientRequestSphereResyncMessage;
 import com.buuz135.dysoncubeproject.network.ClientSubscribeSphereMessage;
+import com.buuz135.dysoncubeproject.network.ClientWatchSphereMessage;
+import com.buuz135.dysoncubeproject.network.DysonSphereDeltaMessage;
+import com.buuz135.dysoncubeproject.network.DysonSphereIdTableMessage;
+import com.buuz135.dysoncubeproject.network.DysonSphereSyncManager;
 import com.buuz135.dysoncubeproject.network.DysonSphereSyncMessage;
-import com.buuz135.dysoncubeproject.world.DysonSphereStructure;
 import com.buuz135.dysoncubeproject.world.DysonSphereProgressSavedData;
+import com.buuz135.dysoncubeproject.world.DysonSphereStorage;
+import com.buuz135.dysoncubeproject.world.SolarWindow;
 import com.hrznstudio.titanium.event.handler.EventManager;
 import com.hrznstudio.titanium.module.ModuleController;
 import com.hrznstudio.titanium.network.NetworkHandler;
@@ -19,10 +25,10 @@ import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
 import net.minecraft.commands.SharedSuggestionProvider;
 import net.minecraft.core.Direction;
-import net.minecraft.nbt.CompoundTag;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.item.*;
+import net.minecraft.world.level.Level;
 import net.minecraft.world.level.dimension.BuiltinDimensionTypes;
 import net.neoforged.api.distmarker.Dist;
 import net.neoforged.bus.api.IEventBus;
@@ -33,6 +39,11 @@ import net.neoforged.neoforge.capabilities.Capabilities;
 import net.neoforged.neoforge.capabilities.RegisterCapabilitiesEvent;
 import net.neoforged.neoforge.data.event.GatherDataEvent;
 import net.neoforged.neoforge.event.RegisterCommandsEvent;
+import net.neoforged.neoforge.event.entity.player.PlayerEvent;
+import net.neoforged.neoforge.event.level.BlockEvent;
+import net.neoforged.neoforge.event.level.LevelEvent;
+import net.neoforged.neoforge.event.server.ServerStartedEvent;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
 import net.neoforged.neoforge.event.tick.LevelTickEvent;
 import org.slf4j.Logger;
 
@@ -51,6 +62,10 @@ public class DysonCubeProject extends ModuleController {
         super(modContainer);
         NETWORK.registerMessage("dyson_sphere_sync", DysonSphereSyncMessage.class);
         NETWORK.registerMessage("client_subscribe_sphere", ClientSubscribeSphereMessage.class);
+        NETWORK.registerMessage("dyson_sphere_delta", DysonSphereDeltaMessage.class);
+        NETWORK.registerMessage("client_request_sphere_resync", ClientRequestSphereResyncMessage.class);
+        NETWORK.registerMessage("dyson_sphere_id_table", DysonSphereIdTableMessage.class);
+        NETWORK.registerMessage("client_watch_sphere", ClientWatchSphereMessage.class);
 
 
         if (dist == Dist.CLIENT) ClientSetup.init();
@@ -58,16 +73,42 @@ public class DysonCubeProject extends ModuleController {
         EventManager.forge(LevelTickEvent.Pre.class).process(post -> {
             if (post.getLevel() instanceof ServerLevel serverLevel && serverLevel.dimensionTypeRegistration().getRegisteredName().equals(BuiltinDimensionTypes.OVERWORLD.location().toString())) {
                 var data = DysonSphereProgressSavedData.get(serverLevel);
-                if (post.getLevel().getGameTime() % 4 == 0) {
-                    var packet = new DysonSphereSyncMessage(data.save(new CompoundTag(), serverLevel.getServer().registryAccess()));
-                    for (ServerPlayer player : serverLevel.getServer().getPlayerList().getPlayers()) {
-                        NETWORK.sendTo(packet, player);
-                    }
-                }
-                data.getSpheres().values().forEach(DysonSphereStructure::generatePower);
-                data.setDirty();
+                data.tick(serverLevel.getServer());
+                DysonSphereSyncManager.tick(serverLevel, data);
+            }
+        }).subscribe();
+        EventManager.forge(LevelEvent.Save.class).process(event -> {
+            if (event.getLevel() instanceof ServerLevel serverLevel && serverLevel.dimension() == Level.OVERWORLD) {
+                DysonSphereProgressSavedData.get(serverLevel).saveSpheres();
+            }
+        }).subscribe();
+        EventManager.forge(BlockEvent.NeighborNotifyEvent.class).process(event -> {
+            if (event.getLevel() instanceof Level level) {
+                SolarWindow.onBlockChanged(level, event.getPos());
+            }
+        }).subscribe();
+        EventManager.forge(LevelEvent.Unload.class).process(event -> {
+            if (event.getLevel() instanceof Level level) {
+                SolarWindow.onLevelUnload(level);
+            }
+        }).subscribe();
+        EventManager.forge(PlayerEvent.PlayerLoggedInEvent.class).process(event -> {
+            if (event.getEntity() instanceof ServerPlayer serverPlayer) {
+                DysonSphereSyncManager.onPlayerJoin(serverPlayer);
             }
         }).subscribe();
+        EventManager.forge(PlayerEvent.PlayerLoggedOutEvent.class).process(event -> {
+            if (event.getEntity() instanceof ServerPlayer serverPlayer) {
+                DysonSphereSyncManager.onPlayerLeave(serverPlayer);
+            }
+        }).subscribe();
+        EventManager.forge(ServerStartedEvent.class).process(event -> DysonSphereProgressSavedData.onServerStarted(event.getServer())).subscribe();
+        EventManager.forge(ServerStoppedEvent.class).process(event -> {
+            DysonSphereSyncManager.clear();
+            SolarWindow.clear();
+            DysonSphereProgressSavedData.onServerStopped();
+            DysonSphereStorage.flushPendingWrites();
+        }).subscribe();
         EventManager.mod(RegisterCapabilitiesEvent.class).process(event -> {
             event.registerBlock(Capabilities.ItemHandler.BLOCK, (level, blockPos, blockState, blockEntity, direction) -> {
                 if (level instanceof ServerLevel serverLevel && blockEntity instanceof EMRailEjectorBlockEntity emRailEjectorBlockEntity && direction == Direction.DOWN) {
@@ -103,12 +144,18 @@ public class DysonCubeProject extends ModuleController {
                 var level = ctx.getSource().getLevel();
                 var data = DysonSphereProgressSavedData.get(level);
                 if (data != null) {
-                    return SharedSuggestionProvider.suggest(data.getSpheres().keySet(), builder);
+                    return SharedSuggestionProvider.suggest(data.getKnownSphereIds(), builder);
                 }
                 return SharedSuggestionProvider.suggest(java.util.List.of(), builder);
             };
             dispatcher.register(Commands.literal("dysoncubeproject")
                     .requires(source -> source.hasPermission(4))
+                    .then(Commands.literal("syncstats")
+                            .executes(ctx -> {
+                                var metrics = DysonSphereSyncManager.getMetrics();
+                                ctx.getSource().sendSuccess(() -> net.minecraft.network.chat.Component.literal(metrics.toString()), false);
+                                return 1;
+                            }))
                     .then(Commands.literal("set")
                             .then(Commands.literal("beams")
                                     .then(Commands.argument("sphereId", StringArgumentType.string()).suggests(sphereIdSuggestions)
@@ -120,10 +167,9 @@ public class DysonCubeProject extends ModuleController {
                                                         final int input = IntegerArgumentType.getInteger(ctx, "value");
                                                         var data = DysonSphereProgressSavedData.get(level);
                                                         if (data == null) return 0;
-                                                        var config = data.getSpheres().computeIfAbsent(sphereId, s -> new DysonSphereStructure());
+                                                        var config = data.getOrCreateSphere(sphereId);
                                                         final int clamped = Math.max(0, Math.min(input, config.getMaxBeams()));
                                                         config.setBeams(clamped);
-                                                        data.setDirty();
                                                         source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("Set beams for sphere '" + sphereId + "' to " + clamped), true);
                                                         return 1;
                                                     })))))
@@ -138,10 +184,9 @@ public class DysonCubeProject extends ModuleController {
                                                         final int input = IntegerArgumentType.getInteger(ctx, "value");
                                                         var data = DysonSphereProgressSavedData.get(level);
                                                         if (data == null) return 0;
-                                                        var config = data.getSpheres().computeIfAbsent(sphereId, s -> new DysonSphereStructure());
+                                                        var config = data.getOrCreateSphere(sphereId);
                                                         final int clamped = Math.max(0, Math.min(input, config.getMaxSolarPanels()));
                                                         config.setSolarPanels(clamped);
-                                                        data.setDirty();
                                                         source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("Set solar panels for sphere '" + sphereId + "' to " + clamped), true);
                                                         return 1;
                                                     })))))
@@ -156,10 +201,9 @@ public class DysonCubeProject extends ModuleController {
                                                         int delta = IntegerArgumentType.getInteger(ctx, "delta");
                                                         var data = DysonSphereProgressSavedData.get(level);
                                                         if (data == null) return 0;
-                                                        var config = data.getSpheres().computeIfAbsent(sphereId, s -> new DysonSphereStructure());
+                                                        var config = data.getOrCreateSphere(sphereId);
                                                         int newVal = Math.max(0, Math.min(config.getBeams() + delta, config.getMaxBeams()));
                                                         config.setBeams(newVal);
-                                                        data.setDirty();
                                                         source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("Beams for sphere '" + sphereId + "' is now " + newVal), true);
                                                         return 1;
                                                     })))))
@@ -174,10 +218,9 @@ public class DysonCubeProject extends ModuleController {
                                                         int delta = IntegerArgumentType.getInteger(ctx, "delta");
                                                         var data = DysonSphereProgressSavedData.get(level);
                                                         if (data == null) return 0;
-                                                        var config = data.getSpheres().computeIfAbsent(sphereId, s -> new DysonSphereStructure());
+                                                        var config = data.getOrCreateSphere(sphereId);
                                                         int newVal = Math.max(0, Math.min(config.getSolarPanels() + delta, config.getMaxSolarPanels()));
                                                         config.setSolarPanels(newVal);
-                                                        data.setDirty();
                                                         source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("Solar panels for sphere '" + sphereId + "' is now " + newVal), true);
                                                         return 1;
                                                     })))))
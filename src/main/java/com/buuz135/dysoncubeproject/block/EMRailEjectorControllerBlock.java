@@ -3,7 +3,6 @@ package com.buuz135.dysoncubeproject.block;
 import com.buuz135.dysoncubeproject.DCPContent;
 import com.buuz135.dysoncubeproject.block.tile.EMRailEjectorBlockEntity;
 import com.buuz135.dysoncubeproject.multiblock.MultiblockStructure;
-import com.buuz135.dysoncubeproject.world.DysonSphereStructure;
 import com.buuz135.dysoncubeproject.world.DysonSphereProgressSavedData;
 import com.hrznstudio.titanium.block.BasicTileBlock;
 import net.minecraft.core.BlockPos;
@@ -58,13 +57,11 @@ public class EMRailEjectorControllerBlock extends DefaultMultiblockControllerBlo
         if (level instanceof ServerLevel serverLevel) {
             if (placer != null) {
                 var dyson = DysonSphereProgressSavedData.get(level);
-                var subscribedSphere = dyson.getSubscribedFor(placer.getStringUUID());
-                dyson.getSpheres().computeIfAbsent(subscribedSphere, s -> new DysonSphereStructure());
-                dyson.setDirty();
+                var subscribedSphere = dyson.getSubscribedFor(placer.getUUID());
+                dyson.getOrCreateSphere(subscribedSphere);
                 if (serverLevel.getBlockEntity(pos) instanceof EMRailEjectorBlockEntity blockEntity) {
                     blockEntity.setDysonSphereId(subscribedSphere);
                 }
-                dyson.setDirty();
             }
             var lowerCorner = pos.offset(-1, 0, -1);
             for (int x = 0; x < 3; x++) {
@@ -3,7 +3,6 @@ package com.buuz135.dysoncubeproject.block;
 import com.buuz135.dysoncubeproject.DCPContent;
 import com.buuz135.dysoncubeproject.block.tile.RayReceiverBlockEntity;
 import com.buuz135.dysoncubeproject.multiblock.MultiblockStructure;
-import com.buuz135.dysoncubeproject.world.DysonSphereStructure;
 import com.buuz135.dysoncubeproject.world.DysonSphereProgressSavedData;
 import com.hrznstudio.titanium.block.BasicTileBlock;
 import net.minecraft.core.BlockPos;
@@ -76,13 +75,11 @@ public class RayReceiverControllerBlock extends DefaultMultiblockControllerBlock
         if (level instanceof ServerLevel serverLevel) {
             if (placer != null) {
                 var dyson = DysonSphereProgressSavedData.get(level);
-                var subscribedSphere = dyson.getSubscribedFor(placer.getStringUUID());
-                dyson.getSpheres().computeIfAbsent(subscribedSphere, s -> new DysonSphereStructure());
-                dyson.setDirty();
+                var subscribedSphere = dyson.getSubscribedFor(placer.getUUID());
+                dyson.getOrCreateSphere(subscribedSphere);
                 if (serverLevel.getBlockEntity(pos) instanceof RayReceiverBlockEntity blockEntity) {
                     blockEntity.setDysonSphereId(subscribedSphere);
                 }
-                dyson.setDirty();
             }
             MultiblockStructureBlock.createStructure(level, pos, pos.offset(-1, 0, 0));
             MultiblockStructureBlock.createStructure(level, pos, pos.offset(1, 0, 0));
@@ -132,6 +129,14 @@ public class RayReceiverControllerBlock extends DefaultMultiblockControllerBlock
         }
     }
 
+    @Override
+    protected void neighborChanged(BlockState state, Level level, BlockPos pos, Block neighborBlock, BlockPos neighborPos, boolean movedByPiston) {
+        super.neighborChanged(state, level, pos, neighborBlock, neighborPos, movedByPiston);
+        if (level.getBlockEntity(pos) instanceof RayReceiverBlockEntity blockEntity) {
+            blockEntity.wake();
+        }
+    }
+
     @Override
     protected VoxelShape getShape(BlockState state, BlockGetter level, BlockPos pos, CollisionContext context) {
         return CONTROLLER_LOCAL_SHAPE;
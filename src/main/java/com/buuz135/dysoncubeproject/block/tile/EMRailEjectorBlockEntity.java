@@ -5,8 +5,9 @@ import com.buuz135.dysoncubeproject.DCPAttachments;
 import com.buuz135.dysoncubeproject.DCPContent;
 import com.buuz135.dysoncubeproject.client.gui.DysonProgressGuiAddon;
 import com.buuz135.dysoncubeproject.client.gui.SubscribeDysonGuiAddon;
-import com.buuz135.dysoncubeproject.world.DysonSphereStructure;
 import com.buuz135.dysoncubeproject.world.DysonSphereProgressSavedData;
+import com.buuz135.dysoncubeproject.world.SolarWindow;
+import com.buuz135.dysoncubeproject.world.SphereHandleCache;
 import com.hrznstudio.titanium.annotation.Save;
 import com.hrznstudio.titanium.api.IFactory;
 import com.hrznstudio.titanium.api.client.IScreenAddon;
@@ -35,8 +36,10 @@ import net.minecraft.core.Direction;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.Style;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.sounds.SoundSource;
+import net.minecraft.util.Mth;
 import net.minecraft.world.InteractionHand;
 import net.minecraft.world.ItemInteractionResult;
 import net.minecraft.world.MenuProvider;
@@ -59,8 +62,12 @@ import java.util.List;
 
 public class EMRailEjectorBlockEntity extends BasicTile<EMRailEjectorBlockEntity> implements IScreenAddonProvider, ITickableBlockEntity<EMRailEjectorBlockEntity>, MenuProvider, IButtonHandler, IContainerAddonProvider, IHasAssetProvider, IComponentHarness {
 
-    @Save
-    private float currentYaw, currentPitch, targetYaw, targetPitch;
+    private static final int PROGRESS_RATE = 1;
+    private static final int FULL_SPHERE_CHECK_INTERVAL = 100;
+
+    // Client only
+    private float currentYaw, currentPitch, previousYaw, previousPitch;
+    private boolean aimInitialized;
     @Save
     private long lastExecution;
     @Save
@@ -73,65 +80,134 @@ public class EMRailEjectorBlockEntity extends BasicTile<EMRailEjectorBlockEntity
     private String dysonSphereId;
     @Save
     private int rampupAmount;
-
-    private int cooldown;
+    // Progress is derived from when the current cycle started, so it's only synced when a cycle starts or stops
+    @Save
+    private long cycleStart;
+    @Save
+    private int cycleProgress;
+    @Save
+    private int cycleRate;
+
+    private long cooldownEnd;
+    private boolean dormant;
+    private long wakeTick;
+    private long sleepEpoch;
+    private boolean wakeOnChange;
+    // Why the last canIncrease check failed, as the number of ticks it can't succeed for
+    private long blockedFor;
+    private boolean blockedUntilChange;
+    private final SphereHandleCache sphereHandle;
+    private int registeredHandle;
 
     public EMRailEjectorBlockEntity(BasicTileBlock<EMRailEjectorBlockEntity> base, BlockEntityType<?> blockEntityType, BlockPos pos, BlockState state) {
         super(base, blockEntityType, pos, state);
         this.progressBarComponent = new ProgressBarComponent<EMRailEjectorBlockEntity>(45, 21, 120)
-                .setCanIncrease(iComponentHarness -> this.canIncrease()).setOnTickWork(() -> {
-            syncObject(this.progressBarComponent);
-                })
-                .setOnFinishWork(this::onFinishWork)
+                .setCanIncrease(iComponentHarness -> this.canIncrease())
                 .setIncreaseType(true)
                 .setComponentHarness(this)
                 .setBarDirection(ProgressBarComponent.BarDirection.VERTICAL_UP)
-                .setColor(DyeColor.CYAN)
-                .setOnTickWork(this::onTickWork);
+                .setColor(DyeColor.CYAN);
         this.input = new InventoryComponent<EMRailEjectorBlockEntity>("input", 7, 42, 1)
                 .setInputFilter((itemStack, integer) -> itemStack.getOrDefault(DCPAttachments.SOLAR_SAIL, 0) > 0 || itemStack.getOrDefault(DCPAttachments.BEAM, 0) > 0)
-                .setSlotToColorRender(0, DyeColor.CYAN);
+                .setSlotToColorRender(0, DyeColor.CYAN)
+                .setOnSlotChanged((itemStack, slot) -> {
+                    if (this.wakeOnChange) wake();
+                })
+                .setComponentHarness(this);
         this.power = new EnergyStorageComponent<>(Config.RAIL_EJECTOR_POWER_BUFFER, Config.RAIL_EJECTOR_POWER_BUFFER, 0, 26, 21);
-        this.currentYaw = 180;
-        this.currentPitch = 90;
-        this.targetYaw = 180; //HORIZONTAL
-        this.targetPitch = 90; //VERTICAL
+        this.power.setComponentHarness(this);
+        this.currentYaw = 180; //HORIZONTAL
+        this.currentPitch = 90; //VERTICAL
+        this.previousYaw = 180;
+        this.previousPitch = 90;
         this.lastExecution = 0;
         this.dysonSphereId = "";
-        this.cooldown = 0;
+        this.sphereHandle = new SphereHandleCache();
+        this.registeredHandle = -1;
+        this.cooldownEnd = 0;
+        this.dormant = false;
         this.rampupAmount = 0;
+        this.cycleStart = 0;
+        this.cycleProgress = 0;
+        this.cycleRate = 0;
+    }
+
+    @Override
+    public void onLoad() {
+        super.onLoad();
+        registerLoaded();
+    }
+
+    @Override
+    public void onChunkUnloaded() {
+        super.onChunkUnloaded();
+        unregisterLoaded();
+    }
+
+    @Override
+    public void setRemoved() {
+        super.setRemoved();
+        unregisterLoaded();
+    }
+
+    private void registerLoaded() {
+        if (!(this.level instanceof ServerLevel)) return;
+        var data = DysonSphereProgressSavedData.get(this.level);
+        this.registeredHandle = getSphereHandle(data);
+        data.addLoadedBlock(this.registeredHandle);
+    }
+
+    private void unregisterLoaded() {
+        if (this.registeredHandle == -1 || !(this.level instanceof ServerLevel)) return;
+        DysonSphereProgressSavedData.get(this.level).removeLoadedBlock(this.registeredHandle);
+        this.registeredHandle = -1;
     }
 
     private boolean canIncrease() {
-        if (this.cooldown > 0) return false;
-        if (this.input.getStackInSlot(0).isEmpty()) return false;
-        if (this.getLevel().isRaining() || this.getLevel().isNight() || !this.getLevel().canSeeSky(this.getBlockPos().above()))
-            return false;
-        var time = level.getTimeOfDay(1f) * 360f;
+        long gameTime = this.level.getGameTime();
+        if (gameTime < this.cooldownEnd) return blocked(this.cooldownEnd - gameTime, false);
+        if (this.input.getStackInSlot(0).isEmpty()) return blocked(Long.MAX_VALUE, true);
+        var window = SolarWindow.get(this.level);
+        if (window.isRaining() || window.isNight()) return blocked(Long.MAX_VALUE, false);
+        if (!window.canSeeSky(this.getBlockPos().above())) return blocked(Config.SKY_VISIBILITY_CACHE_TICKS, false);
+        var time = window.getSunAngle();
         if (time <= 10 || time >= 360 - 10) {
-            return false;
+            // The sun angle moves slower than linearly around noon, wake halfway there and check again
+            float degrees = time <= 10 ? 10 - time : 370 - time;
+            return blocked(Math.max(1, (long) (degrees / 360f * 24000 / 2)), false);
         }
-        var dyson = DysonSphereProgressSavedData.get(this.level).getSpheres().computeIfAbsent(this.dysonSphereId, s -> new DysonSphereStructure());
-        if (dyson.getProgress() >= 1) return false;
+        var data = DysonSphereProgressSavedData.get(this.level);
+        var dyson = data.getOrCreateSphere(getSphereHandle(data));
+        if (dyson.getProgress() >= 1) return blocked(FULL_SPHERE_CHECK_INTERVAL, true);
         var solarPanels = this.input.getStackInSlot(0).getOrDefault(DCPAttachments.SOLAR_SAIL, 0);
         var beams = this.input.getStackInSlot(0).getOrDefault(DCPAttachments.BEAM, 0);
-        if (solarPanels > 0 && (dyson.getSolarPanels() + solarPanels) >= dyson.getMaxSolarPanels()) return false;
-        if (beams > 0 && dyson.getBeams() >= dyson.getMaxBeams()) return false;
+        if (solarPanels > 0 && (dyson.getSolarPanels() + solarPanels) >= dyson.getMaxSolarPanels()) return blocked(FULL_SPHERE_CHECK_INTERVAL, true);
+        if (beams > 0 && dyson.getBeams() >= dyson.getMaxBeams()) return blocked(FULL_SPHERE_CHECK_INTERVAL, true);
         if (this.rampupAmount > 1 && this.getPower().getEnergyStored() < (Math.pow(this.rampupAmount, 2) * Config.RAIL_EJECTOR_CONSUME)) {
             this.rampupAmount = 1;
-            return false;
+            return blocked(1, false);
         }
 
         return true;
     }
 
+    private boolean blocked(long ticks, boolean untilChange) {
+        this.blockedFor = ticks;
+        this.blockedUntilChange = untilChange;
+        return false;
+    }
+
+    public void wake() {
+        this.dormant = false;
+    }
+
     private void onTickWork() {
         this.power.setEnergyStored((int) Math.max(0, this.power.getEnergyStored() - (Math.pow(this.rampupAmount, 2) * Config.RAIL_EJECTOR_CONSUME)));
     }
 
     private void onFinishWork() {
         var data = DysonSphereProgressSavedData.get(this.level);
-        var dyson = data.getSpheres().computeIfAbsent(this.dysonSphereId, s -> new DysonSphereStructure());
+        var dyson = data.getOrCreateSphere(getSphereHandle(data));
         boolean reset = false;
         for (int i = 0; i < this.rampupAmount; i++) {
             if (!this.input.getStackInSlot(0).isEmpty()) {
@@ -145,10 +221,8 @@ public class EMRailEjectorBlockEntity extends BasicTile<EMRailEjectorBlockEntity
             }
         }
         this.lastExecution = this.getLevel().getGameTime();
-        this.cooldown = 30;
+        this.cooldownEnd = this.lastExecution + 30;
 
-        data.setDirty();
-        syncObject(this.lastExecution);
         if (reset) {
             this.rampupAmount = 1;
         } else {
@@ -158,71 +232,106 @@ public class EMRailEjectorBlockEntity extends BasicTile<EMRailEjectorBlockEntity
 
     @Override
     public void serverTick(Level level, BlockPos pos, BlockState state, EMRailEjectorBlockEntity blockEntity) {
+        long gameTime = level.getGameTime();
+        if (this.dormant) {
+            if (gameTime < this.wakeTick && SolarWindow.get(level).getEpoch() == this.sleepEpoch) return;
+            this.dormant = false;
+        }
+        var data = DysonSphereProgressSavedData.get(level);
+        data.markActive(getSphereHandle(data));
         if (progressBarComponent.getCanIncrease().test(progressBarComponent.getComponentHarness())) {
-            if (progressBarComponent.getIncreaseType() && progressBarComponent.getProgress() == 0) {
-                progressBarComponent.onStart();
+            if (this.cycleRate == 0) {
+                if (this.cycleProgress == 0) progressBarComponent.onStart();
+                startCycle(gameTime - 1, this.cycleProgress);
             }
-
-            if (!progressBarComponent.getIncreaseType() && progressBarComponent.getProgress() == progressBarComponent.getMaxProgress()) {
-                progressBarComponent.onStart();
+            onTickWork();
+            if (getProgress(gameTime) >= progressBarComponent.getMaxProgress()) {
+                onFinishWork();
+                stopCycle(0);
             }
+        } else if (this.cycleRate > 0) {
+            stopCycle(progressBarComponent.getCanReset().test(progressBarComponent.getComponentHarness()) ? 0 : getProgress(gameTime - 1));
+        }
+        if (this.cycleRate == 0 && this.blockedFor > 1) {
+            this.dormant = true;
+            this.wakeTick = this.blockedFor == Long.MAX_VALUE ? Long.MAX_VALUE : gameTime + this.blockedFor;
+            this.sleepEpoch = SolarWindow.get(level).getEpoch();
+            this.wakeOnChange = this.blockedUntilChange;
+        }
+        this.blockedFor = 0;
+    }
 
-            progressBarComponent.tickBar();
-
+    private void startCycle(long start, int progress) {
+        this.cycleStart = start;
+        this.cycleProgress = progress;
+        this.cycleRate = PROGRESS_RATE;
+        this.progressBarComponent.setProgress(progress);
+        markForUpdate();
+    }
 
-        } else if (progressBarComponent.getCanReset().test(progressBarComponent.getComponentHarness())) {
-            progressBarComponent.setProgress(progressBarComponent.getIncreaseType() ? 0 : progressBarComponent.getMaxProgress());
-        }
+    private void stopCycle(int progress) {
+        this.cycleProgress = progress;
+        this.cycleRate = 0;
+        this.progressBarComponent.setProgress(progress);
+        markForUpdate();
+    }
 
-        if (this.cooldown > 0) this.cooldown--;
+    /**
+     * @return the launch progress at the given tick, derived from the current cycle on both sides
+     */
+    public int getProgress(long gameTime) {
+        if (this.cycleRate == 0) return this.cycleProgress;
+        long progress = this.cycleProgress + (gameTime - this.cycleStart) * this.cycleRate;
+        return (int) Math.min(progress, this.progressBarComponent.getMaxProgress());
+    }
 
-        this.targetPitch = level.getTimeOfDay(1f) * 360f;
-        //this.targetPitch = 300;
-        if (this.targetPitch <= 10) {
-            this.targetPitch = 10;
+    @OnlyIn(Dist.CLIENT)
+    @Override
+    public void clientTick(Level level, BlockPos pos, BlockState state, EMRailEjectorBlockEntity blockEntity) {
+        progressBarComponent.setProgress(getProgress(level.getGameTime()));
+        if (level instanceof ClientLevel clientLevel && progressBarComponent.getProgress() == 7) {
+            Minecraft.getInstance().getSoundManager().play(new SimpleSoundInstance(DCPContent.Sounds.RAILGUN.get(), SoundSource.BLOCKS, 1, 1, level.getRandom(), pos.getX(), pos.getY(), pos.getZ()));
         }
 
-        if (this.targetPitch >= 360 - 10) {
-            this.targetPitch = 10;
+        float targetPitch = level.getTimeOfDay(1f) * 360f;
+        if (targetPitch <= 10) {
+            targetPitch = 10;
         }
 
-
-        if (this.targetPitch <= 90) {
-            this.targetYaw = 0;
-        } else {
-            this.targetYaw = 180;
+        if (targetPitch >= 360 - 10) {
+            targetPitch = 10;
         }
 
-        if (this.targetPitch >= 90 && this.targetPitch <= 270) {
-            this.targetPitch = 90;
+        float targetYaw = targetPitch <= 90 ? 0 : 180;
+
+        if (targetPitch >= 90 && targetPitch <= 270) {
+            targetPitch = 90;
         }
 
-        if (this.targetPitch >= 360 - 90) {
-            this.targetPitch = 360 - this.targetPitch;
+        if (targetPitch >= 360 - 90) {
+            targetPitch = 360 - targetPitch;
         }
 
         if (level.isRaining()) {
-            this.targetPitch = 90;
+            targetPitch = 90;
         }
 
-        // Move currentPitch towards targetPitch by 1 each tick
-        if (this.currentPitch <= this.targetPitch) {
-            this.currentPitch = Math.min(this.currentPitch + 1, this.targetPitch);
-        } else if (this.currentPitch > this.targetPitch) {
-            this.currentPitch = Math.max(this.currentPitch - 1, this.targetPitch);
+        if (!this.aimInitialized) {
+            this.currentPitch = targetPitch;
+            this.currentYaw = targetYaw;
+            this.aimInitialized = true;
         }
-        if (this.currentYaw <= this.targetYaw) {
-            this.currentYaw = Math.min(this.currentYaw + 1, this.targetYaw);
-        } else if (this.currentYaw > this.targetYaw) {
-            this.currentYaw = Math.max(this.currentYaw - 1, this.targetYaw);
+        this.previousPitch = this.currentPitch;
+        this.previousYaw = this.currentYaw;
+        if (this.currentPitch <= targetPitch) {
+            this.currentPitch = Math.min(this.currentPitch + 1, targetPitch);
+        } else if (this.currentPitch > targetPitch) {
+            this.currentPitch = Math.max(this.currentPitch - 1, targetPitch);
         }
-    }
-
-    @OnlyIn(Dist.CLIENT)
-    @Override
-    public void clientTick(Level level, BlockPos pos, BlockState state, EMRailEjectorBlockEntity blockEntity) {
-        if (level instanceof ClientLevel clientLevel && progressBarComponent.getProgress() == 7) {
-            Minecraft.getInstance().getSoundManager().play(new SimpleSoundInstance(DCPContent.Sounds.RAILGUN.get(), SoundSource.BLOCKS, 1, 1, level.getRandom(), pos.getX(), pos.getY(), pos.getZ()));
+        if (this.currentYaw <= targetYaw) {
+            this.currentYaw = Math.min(this.currentYaw + 1, targetYaw);
+        } else if (this.currentYaw > targetYaw) {
+            this.currentYaw = Math.max(this.currentYaw - 1, targetYaw);
         }
     }
 
@@ -238,12 +347,12 @@ public class EMRailEjectorBlockEntity extends BasicTile<EMRailEjectorBlockEntity
         }
     }
 
-    public float getCurrentPitch() {
-        return currentPitch;
+    public float getCurrentPitch(float partialTicks) {
+        return Mth.lerp(partialTicks, this.previousPitch, this.currentPitch);
     }
 
-    public float getCurrentYaw() {
-        return currentYaw;
+    public float getCurrentYaw(float partialTicks) {
+        return Mth.lerp(partialTicks, this.previousYaw, this.currentYaw);
     }
 
     @OnlyIn(Dist.CLIENT)
@@ -298,13 +407,14 @@ public class EMRailEjectorBlockEntity extends BasicTile<EMRailEjectorBlockEntity
     }
 
     @Override
-    public void markComponentForUpdate(boolean b) {
-        this.markForUpdate();
+    public void markComponentForUpdate(boolean referenceChange) {
+        if (referenceChange) this.markForUpdate();
+        else this.setChanged();
     }
 
     @Override
     public void markComponentDirty() {
-        this.markForUpdate();
+        this.setChanged();
     }
 
     public ProgressBarComponent<EMRailEjectorBlockEntity> getProgressBarComponent() {
@@ -319,8 +429,16 @@ public class EMRailEjectorBlockEntity extends BasicTile<EMRailEjectorBlockEntity
         return dysonSphereId;
     }
 
+    public int getSphereHandle(DysonSphereProgressSavedData data) {
+        return this.sphereHandle.get(data, this.dysonSphereId);
+    }
+
     public void setDysonSphereId(String dysonSphereId) {
         this.dysonSphereId = dysonSphereId;
+        this.sphereHandle.invalidate();
+        unregisterLoaded();
+        registerLoaded();
+        wake();
     }
 
     public InventoryComponent<EMRailEjectorBlockEntity> getInput() {
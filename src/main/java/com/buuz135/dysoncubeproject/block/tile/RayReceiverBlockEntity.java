@@ -4,8 +4,10 @@ import com.buuz135.dysoncubeproject.Config;
 import com.buuz135.dysoncubeproject.DCPContent;
 import com.buuz135.dysoncubeproject.client.gui.DysonProgressGuiAddon;
 import com.buuz135.dysoncubeproject.client.gui.SubscribeDysonGuiAddon;
-import com.buuz135.dysoncubeproject.world.DysonSphereStructure;
+import com.buuz135.dysoncubeproject.world.DysonPowerReceiver;
 import com.buuz135.dysoncubeproject.world.DysonSphereProgressSavedData;
+import com.buuz135.dysoncubeproject.world.SolarWindow;
+import com.buuz135.dysoncubeproject.world.SphereHandleCache;
 import com.hrznstudio.titanium.annotation.Save;
 import com.hrznstudio.titanium.api.IFactory;
 import com.hrznstudio.titanium.api.client.IScreenAddon;
@@ -32,8 +34,10 @@ import net.minecraft.core.Direction;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.Style;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.sounds.SoundSource;
+import net.minecraft.util.Mth;
 import net.minecraft.world.InteractionHand;
 import net.minecraft.world.ItemInteractionResult;
 import net.minecraft.world.MenuProvider;
@@ -46,7 +50,9 @@ import net.minecraft.world.level.block.entity.BlockEntityType;
 import net.minecraft.world.level.block.state.BlockState;
 import net.neoforged.api.distmarker.Dist;
 import net.neoforged.api.distmarker.OnlyIn;
+import net.neoforged.neoforge.capabilities.BlockCapabilityCache;
 import net.neoforged.neoforge.capabilities.Capabilities;
+import net.neoforged.neoforge.energy.IEnergyStorage;
 import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nonnull;
@@ -54,53 +60,152 @@ import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
 
-public class RayReceiverBlockEntity extends BasicTile<RayReceiverBlockEntity> implements IScreenAddonProvider, ITickableBlockEntity<RayReceiverBlockEntity>, MenuProvider, IButtonHandler, IContainerAddonProvider, IHasAssetProvider, IComponentHarness {
+public class RayReceiverBlockEntity extends BasicTile<RayReceiverBlockEntity> implements IScreenAddonProvider, ITickableBlockEntity<RayReceiverBlockEntity>, MenuProvider, IButtonHandler, IContainerAddonProvider, IHasAssetProvider, IComponentHarness, DysonPowerReceiver {
 
 
     @Save
     private String dysonSphereId;
     @Save
     private EnergyStorageComponent<RayReceiverBlockEntity> energyStorageComponent;
-    @Save
+    // Client only
     private float currentPitch;
+    private float previousPitch;
+    private boolean aimInitialized;
+    private final SphereHandleCache sphereHandle;
+    private int registeredHandle;
+    private boolean sleeping;
+    private long wakeTick;
+    private long sleepEpoch;
+    private int sleepBackoff;
+    private BlockCapabilityCache<IEnergyStorage, Direction> consumerCache;
 
     public RayReceiverBlockEntity(BasicTileBlock<RayReceiverBlockEntity> base, BlockEntityType<?> blockEntityType, BlockPos pos, BlockState state) {
         super(base, blockEntityType, pos, state);
         this.dysonSphereId = "";
         this.energyStorageComponent = new EnergyStorageComponent<>(Config.RAY_RECEIVER_POWER_BUFFER, 0, Integer.MAX_VALUE, 19, 22);
         this.currentPitch = 270;
+        this.previousPitch = 270;
+        this.sphereHandle = new SphereHandleCache();
+        this.registeredHandle = -1;
+        this.sleeping = false;
+        this.sleepBackoff = 1;
     }
 
     @Override
-    public void serverTick(Level level, BlockPos pos, BlockState state, RayReceiverBlockEntity blockEntity) {
-        if (level.isDay() && !level.isRaining() && level.canSeeSky(pos.above())) {
-            var dyson = DysonSphereProgressSavedData.get(level);
-            var extractingAmount = Math.min(Config.RAY_RECEIVER_EXTRACT_POWER, this.energyStorageComponent.getMaxEnergyStored() - this.energyStorageComponent.getEnergyStored());
-            var extracted = dyson.getSpheres().computeIfAbsent(this.dysonSphereId, s -> new DysonSphereStructure()).extractPower(extractingAmount);
-            this.energyStorageComponent.setEnergyStored(this.energyStorageComponent.getEnergyStored() + (int) Math.min(extracted, Integer.MAX_VALUE));
-        }
-        var capability = level.getCapability(Capabilities.EnergyStorage.BLOCK, pos.below(), Direction.UP);
-        if (capability != null && capability.canReceive()) {
-            var received = capability.receiveEnergy(Math.min(Config.RAY_RECEIVER_EXTRACT_POWER, this.energyStorageComponent.getEnergyStored()), true);
-            this.energyStorageComponent.setEnergyStored(this.energyStorageComponent.getEnergyStored() - received);
-            capability.receiveEnergy(received, false);
+    public void onLoad() {
+        super.onLoad();
+        registerReceiver();
+        if (this.level instanceof ServerLevel serverLevel) {
+            this.consumerCache = BlockCapabilityCache.create(Capabilities.EnergyStorage.BLOCK, serverLevel, this.worldPosition.below(), Direction.UP, () -> !this.isRemoved(), this::wake);
         }
+    }
 
-        float targetPitch = level.getTimeOfDay(1f) * 360f;
+    @Override
+    public void onChunkUnloaded() {
+        super.onChunkUnloaded();
+        unregisterReceiver();
+    }
 
+    @Override
+    public void setRemoved() {
+        super.setRemoved();
+        unregisterReceiver();
+    }
 
-        if (targetPitch >= 90 && targetPitch <= 270) {
-            targetPitch = 270;
-        }
+    private void registerReceiver() {
+        if (!(this.level instanceof ServerLevel)) return;
+        var data = DysonSphereProgressSavedData.get(this.level);
+        this.registeredHandle = getSphereHandle(data);
+        data.getReceivers().register(this.registeredHandle, this);
+    }
+
+    private void unregisterReceiver() {
+        if (this.registeredHandle == -1 || !(this.level instanceof ServerLevel)) return;
+        DysonSphereProgressSavedData.get(this.level).getReceivers().unregister(this.registeredHandle, this);
+        this.registeredHandle = -1;
+    }
+
+    @Override
+    public long getPowerDemand() {
+        if (this.level == null || !SolarWindow.get(this.level).canReceive(this.worldPosition)) return 0;
+        return this.energyStorageComponent.getMaxEnergyStored() - this.energyStorageComponent.getEnergyStored();
+    }
+
+    @Override
+    public int getPriority() {
+        return this.level == null ? 0 : this.level.getBestNeighborSignal(this.worldPosition);
+    }
+
+    @Override
+    public void receivePower(long amount) {
+        this.energyStorageComponent.setEnergyStored(this.energyStorageComponent.getEnergyStored() + (int) Math.min(amount, Integer.MAX_VALUE));
+        if (amount > 0) wake();
+    }
+
+    /**
+     * Makes the receiver tick again, called when a neighbour changes or sphere power arrives.
+     */
+    public void wake() {
+        this.sleeping = false;
+    }
 
+    private void sleep(SolarWindow window, long ticks) {
+        this.sleeping = true;
+        this.wakeTick = ticks == Long.MAX_VALUE ? Long.MAX_VALUE : this.level.getGameTime() + ticks;
+        this.sleepEpoch = window.getEpoch();
+    }
 
-        if ((this.currentPitch) % 360 <= targetPitch) {
-            this.currentPitch = Math.min((this.currentPitch + 1) % 360, targetPitch);
-        } else if (this.currentPitch > targetPitch) {
-            this.currentPitch = Math.max(this.currentPitch - 1, targetPitch);
+    /**
+     * Sleeps until woken with nothing to push to, a full consumer is retried with a growing delay.
+     */
+    private void updateSleep(SolarWindow window, boolean hasConsumer, int pushed) {
+        if (pushed > 0) {
+            this.sleepBackoff = 1;
+            return;
+        }
+        if (hasConsumer && isBatching()) {
+            long interval = Config.RAY_RECEIVER_BATCH_INTERVAL;
+            sleep(window, interval - Math.floorMod(this.level.getGameTime() + this.worldPosition.asLong(), interval));
+            return;
+        }
+        if (!hasConsumer || this.energyStorageComponent.getEnergyStored() == 0) {
+            sleep(window, Long.MAX_VALUE);
+            return;
         }
+        sleep(window, this.sleepBackoff);
+        this.sleepBackoff = Math.min(this.sleepBackoff * 2, 40);
+    }
 
-        syncObject(currentPitch);
+    @Override
+    public void serverTick(Level level, BlockPos pos, BlockState state, RayReceiverBlockEntity blockEntity) {
+        var window = SolarWindow.get(level);
+        if (this.sleeping) {
+            if (level.getGameTime() < this.wakeTick && window.getEpoch() == this.sleepEpoch) return;
+            this.sleeping = false;
+        }
+        var capability = this.consumerCache == null ? null : this.consumerCache.getCapability();
+        boolean hasConsumer = capability != null && capability.canReceive();
+        int received = 0;
+        if (hasConsumer && (!isBatching() || Math.floorMod(level.getGameTime() + pos.asLong(), Config.RAY_RECEIVER_BATCH_INTERVAL) == 0)) {
+            received = push(capability);
+        }
+        updateSleep(window, hasConsumer, received);
+    }
+
+    /**
+     * A small buffer is pushed every few ticks instead of every tick, staggered by position.
+     */
+    private boolean isBatching() {
+        int stored = this.energyStorageComponent.getEnergyStored();
+        return stored > 0 && stored < Config.RAY_RECEIVER_BATCH_THRESHOLD;
+    }
+
+    private int push(IEnergyStorage consumer) {
+        int stored = this.energyStorageComponent.getEnergyStored();
+        if (stored <= 0) return 0;
+        int accepted = consumer.receiveEnergy(Math.min(Config.RAY_RECEIVER_EXTRACT_POWER, stored), false);
+        if (accepted > 0) this.energyStorageComponent.setEnergyStored(stored - accepted);
+        return accepted;
     }
 
     @OnlyIn(Dist.CLIENT)
@@ -109,6 +214,17 @@ public class RayReceiverBlockEntity extends BasicTile<RayReceiverBlockEntity> im
         if (level instanceof ClientLevel clientLevel && (level.getGameTime() + pos.asLong()) % (17 * 20) == 0 && level.dayTime() % 24000 < 12000 && !level.isRaining()) {
             Minecraft.getInstance().getSoundManager().play(new SimpleSoundInstance(DCPContent.Sounds.RAY.get(), SoundSource.BLOCKS, 0.5f, 1f, level.getRandom(), pos.getX(), pos.getY(), pos.getZ()));
         }
+
+        float targetPitch = level.getTimeOfDay(1f) * 360f;
+        if (targetPitch >= 90 && targetPitch <= 270) {
+            targetPitch = 270;
+        }
+        if (!this.aimInitialized) {
+            this.currentPitch = targetPitch;
+            this.aimInitialized = true;
+        }
+        this.previousPitch = this.currentPitch;
+        this.currentPitch = Mth.wrapDegrees(Mth.approachDegrees(this.currentPitch, targetPitch, 1));
     }
 
     @Override
@@ -183,15 +299,23 @@ public class RayReceiverBlockEntity extends BasicTile<RayReceiverBlockEntity> im
         return dysonSphereId;
     }
 
+    public int getSphereHandle(DysonSphereProgressSavedData data) {
+        return this.sphereHandle.get(data, this.dysonSphereId);
+    }
+
     public void setDysonSphereId(String dysonSphereId) {
         this.dysonSphereId = dysonSphereId;
+        this.sphereHandle.invalidate();
+        unregisterReceiver();
+        registerReceiver();
+        wake();
     }
 
     public EnergyStorageComponent<RayReceiverBlockEntity> getEnergyStorageComponent() {
         return energyStorageComponent;
     }
 
-    public float getCurrentPitch() {
-        return currentPitch;
+    public float getCurrentPitch(float partialTicks) {
+        return Mth.rotLerp(partialTicks, this.previousPitch, this.currentPitch);
     }
 }
@@ -9,6 +9,7 @@ import com.buuz135.dysoncubeproject.client.render.HologramRender;
 import com.buuz135.dysoncubeproject.client.render.SkyRender;
 import com.buuz135.dysoncubeproject.client.tile.EMRailEjectorRender;
 import com.buuz135.dysoncubeproject.client.tile.RayReceiverRender;
+import com.buuz135.dysoncubeproject.world.ClientDysonSphere;
 import com.hrznstudio.titanium.event.handler.EventManager;
 import com.mojang.blaze3d.vertex.DefaultVertexFormat;
 import com.mojang.math.Transformation;
@@ -27,6 +28,8 @@ public class ClientSetup {
         EventManager.forge(RenderHighlightEvent.Block.class).process(HologramRender::blockOverlayEvent).subscribe();
         EventManager.forge(RenderLevelStageEvent.class).process(SkyRender::onRenderStage).subscribe();
         EventManager.mod(RegisterShadersEvent.class).process(ClientSetup::registerShaders).subscribe();
+        EventManager.forge(ClientPlayerNetworkEvent.LoggingOut.class).process(event -> ClientDysonSphere.reset()).subscribe();
+        EventManager.forge(ScreenEvent.Closing.class).process(event -> ClientDysonSphere.stopWatchingFromMenu()).subscribe();
         EventManager.mod(ModelEvent.BakingCompleted.class).process(event -> {
             DCPExtraModels.EM_RAILEJECTOR_BASE = bakeModel(ResourceLocation.fromNamespaceAndPath(DysonCubeProject.MODID, "block/em_railejector_base"), event.getModelBakery());
             DCPExtraModels.EM_RAILEJECTOR_GUN = bakeModel(ResourceLocation.fromNamespaceAndPath(DysonCubeProject.MODID, "block/em_railejector_gun"), event.getModelBakery());
@@ -4,7 +4,6 @@ import com.buuz135.dysoncubeproject.Config;
 import com.buuz135.dysoncubeproject.DCPContent;
 import com.buuz135.dysoncubeproject.util.NumberUtils;
 import com.buuz135.dysoncubeproject.world.ClientDysonSphere;
-import com.buuz135.dysoncubeproject.world.DysonSphereStructure;
 import com.hrznstudio.titanium.client.screen.addon.BasicScreenAddon;
 import com.hrznstudio.titanium.client.screen.asset.IAssetProvider;
 import com.hrznstudio.titanium.util.AssetUtil;
@@ -24,6 +23,7 @@ public class DysonProgressGuiAddon extends BasicScreenAddon {
     public DysonProgressGuiAddon(String dysonID, int posX, int posY) {
         super(posX, posY);
         this.dysonID = dysonID;
+        ClientDysonSphere.watchFromMenu(dysonID);
     }
 
     @Override
@@ -38,7 +38,7 @@ public class DysonProgressGuiAddon extends BasicScreenAddon {
 
     @Override
     public void drawBackgroundLayer(GuiGraphics guiGraphics, Screen screen, IAssetProvider iAssetProvider, int guiX, int guiY, int mouseX, int mouseY, float partialTicks) {
-        var dyson = ClientDysonSphere.DYSON_SPHERE_PROGRESS.getSpheres().computeIfAbsent(dysonID, s -> new DysonSphereStructure());
+        var dyson = ClientDysonSphere.DYSON_SPHERE_PROGRESS.getOrCreateSphere(dysonID);
         var y = 0;
         guiGraphics.drawString(Minecraft.getInstance().font, Component.translatable("gui.dysoncubeproject.dyson_information").withStyle(ChatFormatting.BLUE), this.getPosX() + guiX, this.getPosY() + guiY, 0xFFFFFF, false);
         ++y;
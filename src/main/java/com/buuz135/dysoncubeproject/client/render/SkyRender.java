@@ -21,7 +21,7 @@ public class SkyRender {
         Minecraft mc = Minecraft.getInstance();
         if (mc.level == null || mc.level.isRainingAt(mc.player.getOnPos())) return;
 
-        var subscribedTo = ClientDysonSphere.DYSON_SPHERE_PROGRESS.getSubscribedPlayers().getOrDefault(mc.player.getStringUUID(), mc.player.getStringUUID());
+        var subscribedTo = ClientDysonSphere.DYSON_SPHERE_PROGRESS.getSubscribedFor(mc.player.getUUID());
         var sphere = ClientDysonSphere.DYSON_SPHERE_PROGRESS.getSpheres().getOrDefault(subscribedTo, null);
 
         if (sphere == null) return;
@@ -31,8 +31,8 @@ public class EMRailEjectorRender implements BlockEntityRenderer<EMRailEjectorBlo
         poseStack.mulPose(Axis.ZP.rotationDegrees(90));
 
         // Aim gun by current yaw/pitch
-        poseStack.rotateAround(Axis.XP.rotationDegrees(360 - entity.getCurrentYaw()), 0, 0.5f, 0.5f);
-        poseStack.rotateAround(Axis.ZP.rotationDegrees(360 - entity.getCurrentPitch()), 0, 0.5f, 0.5f);
+        poseStack.rotateAround(Axis.XP.rotationDegrees(360 - entity.getCurrentYaw(partialTicks)), 0, 0.5f, 0.5f);
+        poseStack.rotateAround(Axis.ZP.rotationDegrees(360 - entity.getCurrentPitch(partialTicks)), 0, 0.5f, 0.5f);
 
         // Render the gun
         Minecraft.getInstance().getBlockRenderer().getModelRenderer().renderModel(poseStack.last(), multiBufferSource.getBuffer(RenderType.solid()), null, DCPExtraModels.EM_RAILEJECTOR_GUN, 255, 255, 255, combinedLightIn, combinedOverlayIn);
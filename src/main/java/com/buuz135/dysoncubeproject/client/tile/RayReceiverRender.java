@@ -69,7 +69,7 @@ public class RayReceiverRender implements BlockEntityRenderer<RayReceiverBlockEn
 
         //poseStack.rotateAround(Axis.XP.rotationDegrees(360 - rayReceiverBlockEntity.getCurrentYaw()), 0, 0.5f, 0.5f);
         poseStack.rotateAround(Axis.XP.rotationDegrees(-90), 0, 0.55f, 0.5f);
-        poseStack.rotateAround(Axis.XP.rotationDegrees(360 - rayReceiverBlockEntity.getCurrentPitch() - 180), 0, 0.55f, 0.5f);
+        poseStack.rotateAround(Axis.XP.rotationDegrees(360 - rayReceiverBlockEntity.getCurrentPitch(partial) - 180), 0, 0.55f, 0.5f);
         Minecraft.getInstance().getBlockRenderer().getModelRenderer().renderModel(poseStack.last(), multiBufferSource.getBuffer(RenderType.solid()), null, DCPExtraModels.RAY_RECEIVER_LENS, 255, 255, 255, combinedLightIn, combinedOverlayIn);
 
         poseStack.popPose();
@@ -4,7 +4,7 @@ import com.buuz135.dysoncubeproject.Config;
 import com.buuz135.dysoncubeproject.block.tile.RayReceiverBlockEntity;
 import com.buuz135.dysoncubeproject.world.DysonSphereStructure;
 import com.buuz135.dysoncubeproject.world.DysonSphereProgressSavedData;
-import net.minecraft.core.BlockPos;
+import com.buuz135.dysoncubeproject.world.SolarWindow;
 import net.minecraft.world.level.Level;
 import sonar.fluxnetworks.api.energy.IFNEnergyStorage;
 
@@ -25,13 +25,12 @@ public class RayReceiverFNEnergyStorage implements IFNEnergyStorage {
     public long extractEnergyL(long maxExtract, boolean simulate) {
         Level level = blockEntity.getLevel();
         if (level == null || level.isClientSide()) return 0;
-        BlockPos pos = blockEntity.getBlockPos();
-        if (!level.isDay() || level.isRaining() || !level.canSeeSky(pos.above())) return 0;
+        if (!SolarWindow.get(level).canReceive(blockEntity.getBlockPos())) return 0;
         String sphereId = blockEntity.getDysonSphereId();
         if (sphereId == null || sphereId.isEmpty()) return 0;
 
         var dysonData = DysonSphereProgressSavedData.get(level);
-        DysonSphereStructure sphere = dysonData.getSpheres().get(sphereId);
+        DysonSphereStructure sphere = dysonData.getLoadedSphere(blockEntity.getSphereHandle(dysonData));
         if (sphere == null) return 0;
 
         long toExtract = Math.min(maxExtract, Config.RAY_RECEIVER_EXTRACT_POWER);
@@ -49,7 +48,7 @@ public class RayReceiverFNEnergyStorage implements IFNEnergyStorage {
         if (sphereId == null || sphereId.isEmpty()) return blockEntity.getEnergyStorageComponent().getEnergyStored();
 
         var dysonData = DysonSphereProgressSavedData.get(level);
-        DysonSphereStructure sphere = dysonData.getSpheres().get(sphereId);
+        DysonSphereStructure sphere = dysonData.getLoadedSphere(blockEntity.getSphereHandle(dysonData));
         if (sphere == null) return blockEntity.getEnergyStorageComponent().getEnergyStored();
         return sphere.getStoredPower();
     }
@@ -62,7 +61,7 @@ public class RayReceiverFNEnergyStorage implements IFNEnergyStorage {
         if (sphereId == null || sphereId.isEmpty()) return blockEntity.getEnergyStorageComponent().getMaxEnergyStored();
 
         var dysonData = DysonSphereProgressSavedData.get(level);
-        DysonSphereStructure sphere = dysonData.getSpheres().get(sphereId);
+        DysonSphereStructure sphere = dysonData.getLoadedSphere(blockEntity.getSphereHandle(dysonData));
         if (sphere == null) return blockEntity.getEnergyStorageComponent().getMaxEnergyStored();
         long maxPower = (long) sphere.getSolarPanels() * Config.POWER_PER_SAIL;
         return Math.max(maxPower, blockEntity.getEnergyStorageComponent().getMaxEnergyStored());
@@ -0,0 +1,20 @@
+package com.buuz135.dysoncubeproject.network;
+
+import com.hrznstudio.titanium.network.Message;
+import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.neoforge.network.handling.IPayloadContext;
+
+public class ClientRequestSphereResyncMessage extends Message {
+
+    public ClientRequestSphereResyncMessage() {
+    }
+
+    @Override
+    protected void handleMessage(IPayloadContext context) {
+        context.enqueueWork(() -> {
+            if (context.player() instanceof ServerPlayer sp) {
+                DysonSphereSyncManager.onResyncRequested(sp);
+            }
+        });
+    }
+}
@@ -25,8 +25,9 @@ public class ClientSubscribeSphereMessage extends Message {
                 var level = sp.level();
                 var data = DysonSphereProgressSavedData.get(level);
                 if (data != null && sphereId != null) {
-                    data.getSubscribedPlayers().put(sp.getStringUUID(), sphereId);
-                    data.setDirty();
+                    if (data.subscribe(sp.getUUID(), sphereId)) {
+                        DysonSphereSyncManager.onSubscriptionChanged(sp, sphereId);
+                    }
                 }
             }
         });
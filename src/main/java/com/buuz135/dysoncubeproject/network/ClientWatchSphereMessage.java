@@ -0,0 +1,32 @@
+package com.buuz135.dysoncubeproject.network;
+
+import com.hrznstudio.titanium.network.Message;
+import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.neoforge.network.handling.IPayloadContext;
+
+/**
+ * Sent by a menu showing sphere information when it opens and closes, the server answers with the sphere state and
+ * keeps it updated while the menu stays open.
+ */
+public class ClientWatchSphereMessage extends Message {
+
+    public String sphereId;
+    public boolean watch;
+
+    public ClientWatchSphereMessage() {
+    }
+
+    public ClientWatchSphereMessage(String sphereId, boolean watch) {
+        this.sphereId = sphereId;
+        this.watch = watch;
+    }
+
+    @Override
+    protected void handleMessage(IPayloadContext context) {
+        context.enqueueWork(() -> {
+            if (context.player() instanceof ServerPlayer sp && sphereId != null) {
+                DysonSphereSyncManager.onWatchRequested(sp, sphereId, watch);
+            }
+        });
+    }
+}
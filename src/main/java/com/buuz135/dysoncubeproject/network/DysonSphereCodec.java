@@ -0,0 +1,82 @@
+package com.buuz135.dysoncubeproject.network;
+
+import com.buuz135.dysoncubeproject.world.DysonSphereProgressSavedData;
+import com.buuz135.dysoncubeproject.world.DysonSphereStructure;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
+
+import java.util.UUID;
+
+/**
+ * Binary wire format of the sphere sync messages, sphere ids are sent as indexes into a per connection id table.
+ * <pre>
+ * declarations: varint count, count x (varint index, utf id)
+ * payload:      varint sphereCount, sphereCount x (varint index, sphere delta)
+ *               varint removedCount, removedCount x (varint index)
+ *               varint subscription index + 1, 0 when unchanged
+ * </pre>
+ * The bytes travel inside a single byte array tag so they fit Titanium's message fields.
+ */
+public class DysonSphereCodec {
+
+    public static CompoundTag wrap(byte[] bytes) {
+        var tag = new CompoundTag();
+        tag.putByteArray("data", bytes);
+        return tag;
+    }
+
+    public static FriendlyByteBuf unwrap(CompoundTag tag) {
+        // Wraps the tag's own array, no copy is made
+        return new FriendlyByteBuf(Unpooled.wrappedBuffer(tag.getByteArray("data")));
+    }
+
+    public static byte[] toBytes(FriendlyByteBuf buf) {
+        var bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        buf.release();
+        return bytes;
+    }
+
+    public static byte[] encodeSphere(DysonSphereStructure sphere, int fields) {
+        var buf = new FriendlyByteBuf(Unpooled.buffer(24));
+        sphere.writeDelta(buf, fields);
+        return toBytes(buf);
+    }
+
+    public static void readDeclarations(FriendlyByteBuf buf, Int2ObjectMap<String> ids) {
+        int count = buf.readVarInt();
+        for (int i = 0; i < count; i++) {
+            int index = buf.readVarInt();
+            ids.put(index, buf.readUtf());
+        }
+    }
+
+    /**
+     * Decodes a payload straight into the given store.
+     *
+     * @return false if the payload references an id the client doesn't know, the store is then left partially updated
+     */
+    public static boolean readPayload(FriendlyByteBuf buf, Int2ObjectMap<String> ids, DysonSphereProgressSavedData target, UUID playerUUID) {
+        int sphereCount = buf.readVarInt();
+        for (int i = 0; i < sphereCount; i++) {
+            var id = ids.get(buf.readVarInt());
+            if (id == null) return false;
+            target.getOrCreateSphere(id).readDelta(buf);
+        }
+        int removedCount = buf.readVarInt();
+        for (int i = 0; i < removedCount; i++) {
+            var id = ids.get(buf.readVarInt());
+            if (id == null) return false;
+            target.removeSphere(id);
+        }
+        int subscription = buf.readVarInt() - 1;
+        if (subscription >= 0) {
+            var id = ids.get(subscription);
+            if (id == null) return false;
+            target.subscribe(playerUUID, id);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,33 @@
+package com.buuz135.dysoncubeproject.network;
+
+import com.buuz135.dysoncubeproject.world.ClientDysonSphere;
+import com.hrznstudio.titanium.network.Message;
+import net.minecraft.nbt.CompoundTag;
+import net.neoforged.neoforge.network.handling.IPayloadContext;
+
+/**
+ * Changed fields of changed spheres, only valid on top of the state at {@link #baseVersion}.
+ */
+public class DysonSphereDeltaMessage extends Message {
+
+    public CompoundTag payload;
+    public long baseVersion;
+    public long version;
+
+    public DysonSphereDeltaMessage() {
+
+    }
+
+    public DysonSphereDeltaMessage(CompoundTag payload, long baseVersion, long version) {
+        this.payload = payload;
+        this.baseVersion = baseVersion;
+        this.version = version;
+    }
+
+    @Override
+    protected void handleMessage(IPayloadContext context) {
+        context.enqueueWork(() -> {
+            ClientDysonSphere.onDelta(DysonSphereCodec.unwrap(payload), baseVersion, version);
+        });
+    }
+}
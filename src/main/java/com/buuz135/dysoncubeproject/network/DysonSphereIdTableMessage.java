@@ -0,0 +1,29 @@
+package com.buuz135.dysoncubeproject.network;
+
+import com.buuz135.dysoncubeproject.world.ClientDysonSphere;
+import com.hrznstudio.titanium.network.Message;
+import net.minecraft.nbt.CompoundTag;
+import net.neoforged.neoforge.network.handling.IPayloadContext;
+
+/**
+ * Sphere id table entries the client hasn't seen yet on this connection, always sent ahead of the payload using them.
+ */
+public class DysonSphereIdTableMessage extends Message {
+
+    public CompoundTag payload;
+
+    public DysonSphereIdTableMessage() {
+
+    }
+
+    public DysonSphereIdTableMessage(CompoundTag payload) {
+        this.payload = payload;
+    }
+
+    @Override
+    protected void handleMessage(IPayloadContext context) {
+        context.enqueueWork(() -> {
+            ClientDysonSphere.onIdTable(DysonSphereCodec.unwrap(payload));
+        });
+    }
+}
@@ -0,0 +1,303 @@
+package com.buuz135.dysoncubeproject.network;
+
+import com.buuz135.dysoncubeproject.Config;
+import com.buuz135.dysoncubeproject.DysonCubeProject;
+import com.buuz135.dysoncubeproject.block.tile.EMRailEjectorBlockEntity;
+import com.buuz135.dysoncubeproject.block.tile.RayReceiverBlockEntity;
+import com.buuz135.dysoncubeproject.world.DysonSphereProgressSavedData;
+import com.buuz135.dysoncubeproject.world.DysonSphereStructure;
+import com.hrznstudio.titanium.container.BasicAddonContainer;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.inventory.AbstractContainerMenu;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.UUID;
+
+/**
+ * Server side replication of the sphere data. Each player only gets the spheres they observe, as tracked by the
+ * {@link SphereInterestTracker}: a baseline when they join and then a stream of versioned deltas.
+ * <p>
+ * Updates are scheduled per player and sphere: spheres in an open menu are synced every {@link Config#SYNC_MENU_INTERVAL}
+ * ticks, spheres only seen in the sky get slower the faster they change, and sky updates wait while the player is over
+ * their byte budget. Skipped versions are coalesced into a single full snapshot.
+ */
+public class DysonSphereSyncManager {
+
+    private static final HashMap<UUID, PlayerSyncState> STATES = new HashMap<>();
+    private static final SphereIdTable ID_TABLE = new SphereIdTable();
+    private static final HashMap<String, EncodedSnapshot> SNAPSHOTS = new HashMap<>();
+    private static final HashMap<String, EncodedSnapshot> DELTAS = new HashMap<>();
+    private static final HashMap<String, ChangeRate> CHANGE_RATES = new HashMap<>();
+    private static final SyncMetrics METRICS = new SyncMetrics();
+    private static final SphereInterestTracker INTEREST = new SphereInterestTracker(new SphereInterestTracker.InterestListener() {
+        @Override
+        public void onWatch(UUID player, String sphereId) {
+            var state = getState(player);
+            state.removed.remove(sphereId);
+            state.sentVersions.removeLong(sphereId);
+        }
+
+        @Override
+        public void onUnwatch(UUID player, String sphereId) {
+            var state = getState(player);
+            state.sentVersions.removeLong(sphereId);
+            state.lastSent.removeLong(sphereId);
+            state.removed.add(sphereId);
+            if (INTEREST.getWatchers(sphereId).isEmpty()) {
+                SNAPSHOTS.remove(sphereId);
+                DELTAS.remove(sphereId);
+                CHANGE_RATES.remove(sphereId);
+            }
+        }
+    });
+
+    public static SphereInterestTracker getInterest() {
+        return INTEREST;
+    }
+
+    public static SyncMetrics getMetrics() {
+        return METRICS;
+    }
+
+    public static void onPlayerJoin(ServerPlayer player) {
+        var data = DysonSphereProgressSavedData.get(player.level());
+        if (data == null) return;
+        if (Config.SYNC_SUBSCRIBED_SPHERES) {
+            INTEREST.setSubscription(player.getUUID(), data.getSubscribedFor(player.getUUID()));
+        }
+        sendBaseline(player);
+    }
+
+    public static void onPlayerLeave(ServerPlayer player) {
+        INTEREST.remove(player.getUUID());
+        STATES.remove(player.getUUID());
+    }
+
+    public static void onSubscriptionChanged(ServerPlayer player, String sphereId) {
+        if (Config.SYNC_SUBSCRIBED_SPHERES) {
+            INTEREST.setSubscription(player.getUUID(), sphereId);
+        }
+        getState(player.getUUID()).subscriptionChanged = true;
+    }
+
+    /**
+     * Watch requests are only honoured for the sphere of the machine menu the player really has open, so clients can't
+     * read arbitrary spheres or make the server intern ids they made up.
+     */
+    public static void onWatchRequested(ServerPlayer player, String sphereId, boolean watch) {
+        if (watch) {
+            if (!sphereId.equals(getMenuSphereId(player.containerMenu))) return;
+            INTEREST.setOpenMenu(player.getUUID(), sphereId);
+            // Answer right away instead of waiting for the next tick so the menu doesn't show empty data
+            var data = DysonSphereProgressSavedData.get(player.level());
+            if (data != null) syncPlayer(player, data, player.level().getGameTime());
+        } else if (INTEREST.isMenuOpen(player.getUUID(), sphereId)) {
+            INTEREST.setOpenMenu(player.getUUID(), null);
+        }
+    }
+
+    private static String getMenuSphereId(AbstractContainerMenu menu) {
+        if (menu instanceof BasicAddonContainer container) {
+            if (container.getProvider() instanceof EMRailEjectorBlockEntity ejector) return ejector.getDysonSphereId();
+            if (container.getProvider() instanceof RayReceiverBlockEntity receiver) return receiver.getDysonSphereId();
+        }
+        return null;
+    }
+
+    public static void clear() {
+        INTEREST.clear();
+        STATES.clear();
+        ID_TABLE.clear();
+        SNAPSHOTS.clear();
+        DELTAS.clear();
+        CHANGE_RATES.clear();
+        METRICS.reset();
+    }
+
+    public static void onResyncRequested(ServerPlayer player) {
+        // The client dropped its id table too, so everything has to be declared again
+        getState(player.getUUID()).knownIds.clear();
+        sendBaseline(player);
+    }
+
+    public static void sendBaseline(ServerPlayer player) {
+        var data = DysonSphereProgressSavedData.get(player.level());
+        if (data == null) return;
+        var state = getState(player.getUUID());
+        var writer = new SpherePayloadWriter(ID_TABLE, state.knownIds);
+        var gameTime = player.level().getGameTime();
+        for (String sphereId : INTEREST.getWatched(player.getUUID())) {
+            var sphere = data.getSphere(sphereId);
+            if (sphere == null) continue;
+            writer.addSphere(sphereId, getSnapshot(sphereId, sphere));
+            state.sentVersions.put(sphereId, sphere.getVersion());
+            state.lastSent.put(sphereId, gameTime);
+        }
+        writer.setSubscription(data.getSubscribedFor(player.getUUID()));
+        state.removed.clear();
+        state.subscriptionChanged = false;
+        sendDeclarations(player, writer);
+        var payload = writer.getPayload();
+        METRICS.onBaselineSent(payload.length);
+        METRICS.onPacketSent();
+        DysonCubeProject.NETWORK.sendTo(new DysonSphereSyncMessage(DysonSphereCodec.wrap(payload), state.version), player);
+    }
+
+    public static void tick(ServerLevel serverLevel, DysonSphereProgressSavedData data) {
+        var gameTime = serverLevel.getGameTime();
+        // Only spheres somebody is looking at are flushed, unwatched spheres keep accumulating their changes
+        for (String sphereId : INTEREST.getWatchedSpheres()) {
+            var sphere = data.getSphere(sphereId);
+            if (sphere == null || !sphere.hasChanges()) continue;
+            // Encoded once, every watcher that is up to date gets the same bytes
+            var delta = DysonSphereCodec.encodeSphere(sphere, sphere.flushChanges());
+            DELTAS.put(sphereId, new EncodedSnapshot(sphere.getVersion(), delta));
+            CHANGE_RATES.computeIfAbsent(sphereId, s -> new ChangeRate()).onChange(gameTime);
+            METRICS.onChange(delta.length, INTEREST.getWatchers(sphereId).size());
+        }
+        for (ServerPlayer player : serverLevel.getServer().getPlayerList().getPlayers()) {
+            var state = STATES.get(player.getUUID());
+            if (state == null) continue;
+            state.refillBudget();
+            syncPlayer(player, data, gameTime);
+        }
+    }
+
+    private static void syncPlayer(ServerPlayer player, DysonSphereProgressSavedData data, long gameTime) {
+        var state = getState(player.getUUID());
+        // Most ticks have nothing to send, only allocate a writer once something turns up
+        SpherePayloadWriter writer = null;
+        var changeBytes = 0;
+        for (String sphereId : INTEREST.getWatched(player.getUUID())) {
+            var bytes = scheduleSphere(player, state, data, sphereId, gameTime);
+            if (bytes == null) continue;
+            if (writer == null) writer = new SpherePayloadWriter(ID_TABLE, state.knownIds);
+            writer.addSphere(sphereId, bytes);
+            changeBytes += bytes.length;
+        }
+        if (writer == null && state.removed.isEmpty() && !state.subscriptionChanged) return;
+        if (writer == null) writer = new SpherePayloadWriter(ID_TABLE, state.knownIds);
+        state.removed.forEach(writer::addRemoved);
+        if (state.subscriptionChanged) writer.setSubscription(data.getSubscribedFor(player.getUUID()));
+        state.removed.clear();
+        state.subscriptionChanged = false;
+        if (writer.isEmpty()) return;
+        sendDeclarations(player, writer);
+        var payload = writer.getPayload();
+        METRICS.onChangeSent(changeBytes);
+        METRICS.onPacketSent();
+        var baseVersion = state.version++;
+        DysonCubeProject.NETWORK.sendTo(new DysonSphereDeltaMessage(DysonSphereCodec.wrap(payload), baseVersion, state.version), player);
+    }
+
+    /**
+     * Picks the bytes to send for the sphere if it's out of date and due, and records them as sent.
+     *
+     * @return the encoded sphere, or null if nothing has to be sent
+     */
+    @Nullable
+    private static byte[] scheduleSphere(ServerPlayer player, PlayerSyncState state, DysonSphereProgressSavedData data, String sphereId, long gameTime) {
+        var sphere = data.getSphere(sphereId);
+        if (sphere == null) return null;
+        var sentVersion = state.sentVersions.getLong(sphereId);
+        var firstSync = sentVersion == -1;
+        if (!firstSync && sentVersion == sphere.getVersion()) return null;
+
+        var menuOpen = INTEREST.isMenuOpen(player.getUUID(), sphereId);
+        if (!firstSync && gameTime - state.lastSent.getLong(sphereId) < getInterval(sphereId, menuOpen, gameTime)) return null;
+
+        var delta = DELTAS.get(sphereId);
+        var bytes = !firstSync && delta != null && delta.version() == sphere.getVersion() && sentVersion == sphere.getVersion() - 1 ? delta.bytes() : getSnapshot(sphereId, sphere);
+        // New spheres and open menus always go through, sky updates wait until the budget recovers
+        if (!firstSync && !menuOpen && bytes.length > state.budget) {
+            METRICS.onDeferred();
+            return null;
+        }
+        state.budget -= bytes.length;
+        state.sentVersions.put(sphereId, sphere.getVersion());
+        state.lastSent.put(sphereId, gameTime);
+        return bytes;
+    }
+
+    private static int getInterval(String sphereId, boolean menuOpen, long gameTime) {
+        if (menuOpen) return Config.SYNC_MENU_INTERVAL;
+        var rate = CHANGE_RATES.get(sphereId);
+        var changesPerSecond = rate == null ? 0 : rate.getChangesPerSecond(gameTime);
+        return Math.max(Config.SYNC_MENU_INTERVAL, (int) (Config.SYNC_SKY_INTERVAL * Math.min(1, changesPerSecond)));
+    }
+
+    /**
+     * Full encoding of a sphere, reused by every player that needs it until the sphere version moves.
+     */
+    private static byte[] getSnapshot(String sphereId, DysonSphereStructure sphere) {
+        // Unflushed changes aren't covered by the version yet, so the bytes can't be reused
+        if (sphere.hasChanges()) return DysonSphereCodec.encodeSphere(sphere, DysonSphereStructure.ALL_CHANGED);
+        var snapshot = SNAPSHOTS.get(sphereId);
+        if (snapshot == null || snapshot.version() != sphere.getVersion()) {
+            snapshot = new EncodedSnapshot(sphere.getVersion(), DysonSphereCodec.encodeSphere(sphere, DysonSphereStructure.ALL_CHANGED));
+            SNAPSHOTS.put(sphereId, snapshot);
+        }
+        return snapshot.bytes();
+    }
+
+    private static void sendDeclarations(ServerPlayer player, SpherePayloadWriter writer) {
+        var declarations = writer.getDeclarations();
+        if (declarations != null) {
+            METRICS.onPacketSent();
+            DysonCubeProject.NETWORK.sendTo(new DysonSphereIdTableMessage(DysonSphereCodec.wrap(declarations)), player);
+        }
+    }
+
+    private static PlayerSyncState getState(UUID player) {
+        return STATES.computeIfAbsent(player, uuid -> new PlayerSyncState());
+    }
+
+    private record EncodedSnapshot(long version, byte[] bytes) {
+    }
+
+    private static class ChangeRate {
+
+        private double changesPerSecond;
+        private long lastChange;
+
+        private void onChange(long gameTime) {
+            var elapsed = Math.max(1, gameTime - this.lastChange);
+            this.changesPerSecond = this.changesPerSecond * 0.8 + (20D / elapsed) * 0.2;
+            this.lastChange = gameTime;
+        }
+
+        /**
+         * The average only moves when a change happens, a sphere that has been quiet since can't be changing faster
+         * than once per the time it has been quiet.
+         */
+        private double getChangesPerSecond(long gameTime) {
+            return Math.min(this.changesPerSecond, 20D / Math.max(1, gameTime - this.lastChange));
+        }
+    }
+
+    private static class PlayerSyncState {
+
+        private long version;
+        private double budget = Config.SYNC_PLAYER_BYTES_PER_SECOND;
+        private final Object2LongOpenHashMap<String> sentVersions = createVersionMap();
+        private final Object2LongOpenHashMap<String> lastSent = new Object2LongOpenHashMap<>();
+        private final HashSet<String> removed = new HashSet<>();
+        private final BitSet knownIds = new BitSet();
+        private boolean subscriptionChanged;
+
+        private void refillBudget() {
+            this.budget = Math.min(Config.SYNC_PLAYER_BYTES_PER_SECOND, this.budget + Config.SYNC_PLAYER_BYTES_PER_SECOND / 20D);
+        }
+
+        private static Object2LongOpenHashMap<String> createVersionMap() {
+            var map = new Object2LongOpenHashMap<String>();
+            map.defaultReturnValue(-1);
+            return map;
+        }
+    }
+}
@@ -1,28 +1,31 @@
 package com.buuz135.dysoncubeproject.network;
 
 import com.buuz135.dysoncubeproject.world.ClientDysonSphere;
-import com.buuz135.dysoncubeproject.world.DysonSphereProgressSavedData;
 import com.hrznstudio.titanium.network.Message;
-import net.minecraft.client.Minecraft;
 import net.minecraft.nbt.CompoundTag;
 import net.neoforged.neoforge.network.handling.IPayloadContext;
 
+/**
+ * Full sphere baseline, sent on join and whenever a client detects a gap in the delta stream.
+ */
 public class DysonSphereSyncMessage extends Message {
 
-    public CompoundTag tag;
+    public CompoundTag payload;
+    public long version;
 
     public DysonSphereSyncMessage() {
 
     }
 
-    public DysonSphereSyncMessage(CompoundTag tag) {
-        this.tag = tag;
+    public DysonSphereSyncMessage(CompoundTag payload, long version) {
+        this.payload = payload;
+        this.version = version;
     }
 
     @Override
     protected void handleMessage(IPayloadContext context) {
         context.enqueueWork(() -> {
-            ClientDysonSphere.DYSON_SPHERE_PROGRESS = DysonSphereProgressSavedData.load(Minecraft.getInstance().level.registryAccess(), tag);
+            ClientDysonSphere.onBaseline(DysonSphereCodec.unwrap(payload), version);
         });
     }
 }
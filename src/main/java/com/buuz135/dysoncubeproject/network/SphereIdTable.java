@@ -0,0 +1,35 @@
+package com.buuz135.dysoncubeproject.network;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.util.ArrayList;
+
+/**
+ * Server wide sphere id to index table used on the wire, each client learns an entry once per connection.
+ */
+public class SphereIdTable {
+
+    private final Object2IntOpenHashMap<String> indexes;
+    private final ArrayList<String> ids;
+
+    public SphereIdTable() {
+        this.indexes = new Object2IntOpenHashMap<>();
+        this.indexes.defaultReturnValue(-1);
+        this.ids = new ArrayList<>();
+    }
+
+    public int getOrCreate(String id) {
+        int index = this.indexes.getInt(id);
+        if (index == -1) {
+            index = this.ids.size();
+            this.ids.add(id);
+            this.indexes.put(id, index);
+        }
+        return index;
+    }
+
+    public void clear() {
+        this.indexes.clear();
+        this.ids.clear();
+    }
+}
@@ -0,0 +1,121 @@
+package com.buuz135.dysoncubeproject.network;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Keeps track of which spheres each player observes, either because they are subscribed to it (sky rendering) or
+ * because they have a menu open that shows it, and the reverse sphere to watchers index.
+ */
+public class SphereInterestTracker {
+
+    private final HashMap<UUID, PlayerInterest> players;
+    private final HashMap<String, HashSet<UUID>> watchers;
+    private final InterestListener listener;
+
+    public SphereInterestTracker(InterestListener listener) {
+        this.players = new HashMap<>();
+        this.watchers = new HashMap<>();
+        this.listener = listener;
+    }
+
+    public void setSubscription(UUID player, @Nullable String sphereId) {
+        var interest = this.players.computeIfAbsent(player, uuid -> new PlayerInterest());
+        var before = new HashSet<>(interest.watched);
+        interest.subscribedSphere = sphereId;
+        interest.updateWatched();
+        update(player, before, interest.watched);
+    }
+
+    public void setOpenMenu(UUID player, @Nullable String sphereId) {
+        var interest = this.players.computeIfAbsent(player, uuid -> new PlayerInterest());
+        var before = new HashSet<>(interest.watched);
+        interest.openMenuSphere = sphereId;
+        interest.updateWatched();
+        update(player, before, interest.watched);
+    }
+
+    public void remove(UUID player) {
+        var interest = this.players.remove(player);
+        if (interest == null) return;
+        for (String sphereId : interest.watched) {
+            removeWatcher(sphereId, player);
+        }
+    }
+
+    public void clear() {
+        this.players.clear();
+        this.watchers.clear();
+    }
+
+    /**
+     * @return a read only view of the spheres the player observes, it changes with the player's interest
+     */
+    public Set<String> getWatched(UUID player) {
+        var interest = this.players.get(player);
+        return interest == null ? Collections.emptySet() : interest.watchedView;
+    }
+
+    public Set<UUID> getWatchers(String sphereId) {
+        var sphereWatchers = this.watchers.get(sphereId);
+        return sphereWatchers == null ? Collections.emptySet() : sphereWatchers;
+    }
+
+    public Set<String> getWatchedSpheres() {
+        return this.watchers.keySet();
+    }
+
+    public boolean isMenuOpen(UUID player, String sphereId) {
+        var interest = this.players.get(player);
+        return interest != null && sphereId.equals(interest.openMenuSphere);
+    }
+
+    private void update(UUID player, Set<String> before, Set<String> after) {
+        for (String sphereId : before) {
+            if (!after.contains(sphereId)) {
+                removeWatcher(sphereId, player);
+                this.listener.onUnwatch(player, sphereId);
+            }
+        }
+        for (String sphereId : after) {
+            if (!before.contains(sphereId)) {
+                this.watchers.computeIfAbsent(sphereId, s -> new HashSet<>()).add(player);
+                this.listener.onWatch(player, sphereId);
+            }
+        }
+    }
+
+    private void removeWatcher(String sphereId, UUID player) {
+        var sphereWatchers = this.watchers.get(sphereId);
+        if (sphereWatchers != null) {
+            sphereWatchers.remove(player);
+            if (sphereWatchers.isEmpty()) this.watchers.remove(sphereId);
+        }
+    }
+
+    public interface InterestListener {
+
+        void onWatch(UUID player, String sphereId);
+
+        void onUnwatch(UUID player, String sphereId);
+    }
+
+    private static class PlayerInterest {
+
+        private String subscribedSphere;
+        private String openMenuSphere;
+        // Kept up to date on change, it's read by the sync manager for every player every tick
+        private final HashSet<String> watched = new HashSet<>();
+        private final Set<String> watchedView = Collections.unmodifiableSet(watched);
+
+        private void updateWatched() {
+            watched.clear();
+            if (subscribedSphere != null) watched.add(subscribedSphere);
+            if (openMenuSphere != null) watched.add(openMenuSphere);
+        }
+    }
+}
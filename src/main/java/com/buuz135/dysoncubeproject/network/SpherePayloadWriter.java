@@ -0,0 +1,88 @@
+package com.buuz135.dysoncubeproject.network;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+
+/**
+ * Builds the binary sync payload for one player, see {@link DysonSphereCodec} for the layout. Sphere ids are written
+ * as table indexes, ids the player hasn't seen yet are collected as declarations to send ahead of the payload.
+ */
+public class SpherePayloadWriter {
+
+    private final SphereIdTable idTable;
+    private final BitSet knownIds;
+    private final FriendlyByteBuf spheres;
+    private final FriendlyByteBuf removed;
+    private final FriendlyByteBuf declarations;
+    private int sphereCount;
+    private int removedCount;
+    private int declarationCount;
+    private int subscription;
+
+    public SpherePayloadWriter(SphereIdTable idTable, BitSet knownIds) {
+        this.idTable = idTable;
+        this.knownIds = knownIds;
+        this.spheres = new FriendlyByteBuf(Unpooled.buffer());
+        this.removed = new FriendlyByteBuf(Unpooled.buffer());
+        this.declarations = new FriendlyByteBuf(Unpooled.buffer());
+        this.subscription = -1;
+    }
+
+    /**
+     * @param encodedSphere sphere delta encoded once with {@link DysonSphereCodec#encodeSphere} and shared by every recipient
+     */
+    public void addSphere(String id, byte[] encodedSphere) {
+        this.spheres.writeVarInt(index(id));
+        this.spheres.writeBytes(encodedSphere);
+        ++this.sphereCount;
+    }
+
+    public void addRemoved(String id) {
+        this.removed.writeVarInt(index(id));
+        ++this.removedCount;
+    }
+
+    public void setSubscription(String id) {
+        this.subscription = index(id);
+    }
+
+    public boolean isEmpty() {
+        return this.sphereCount == 0 && this.removedCount == 0 && this.subscription == -1;
+    }
+
+    /**
+     * @return the id table entries this payload introduces to the player, or null if it only uses known ids
+     */
+    @Nullable
+    public byte[] getDeclarations() {
+        if (this.declarationCount == 0) return null;
+        var buf = new FriendlyByteBuf(Unpooled.buffer());
+        buf.writeVarInt(this.declarationCount);
+        buf.writeBytes(this.declarations);
+        return DysonSphereCodec.toBytes(buf);
+    }
+
+    public byte[] getPayload() {
+        var buf = new FriendlyByteBuf(Unpooled.buffer());
+        buf.writeVarInt(this.sphereCount);
+        buf.writeBytes(this.spheres);
+        buf.writeVarInt(this.removedCount);
+        buf.writeBytes(this.removed);
+        buf.writeVarInt(this.subscription + 1);
+        return DysonSphereCodec.toBytes(buf);
+    }
+
+    private int index(String id) {
+        int index = this.idTable.getOrCreate(id);
+        if (!this.knownIds.get(index)) {
+            this.knownIds.set(index);
+            this.declarations.writeVarInt(index);
+            this.declarations.writeUtf(id);
+            ++this.declarationCount;
+        }
+        return index;
+    }
+}
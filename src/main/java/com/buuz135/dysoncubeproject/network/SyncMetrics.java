@@ -0,0 +1,54 @@
+package com.buuz135.dysoncubeproject.network;
+
+/**
+ * Running totals of the sphere sync traffic since the server started.
+ */
+public class SyncMetrics {
+
+    private long changeBytes;
+    private long changeBytesSent;
+    private long baselineBytesSent;
+    private long packetsSent;
+    private long deferredUpdates;
+
+    /**
+     * Bytes a sphere change would have cost if it was sent to every watcher as soon as it happened.
+     */
+    public void onChange(int bytes, int watchers) {
+        this.changeBytes += (long) bytes * watchers;
+    }
+
+    public void onChangeSent(int bytes) {
+        this.changeBytesSent += bytes;
+    }
+
+    public void onBaselineSent(int bytes) {
+        this.baselineBytesSent += bytes;
+    }
+
+    public void onPacketSent() {
+        ++this.packetsSent;
+    }
+
+    public void onDeferred() {
+        ++this.deferredUpdates;
+    }
+
+    public long getBytesSaved() {
+        return Math.max(0, this.changeBytes - this.changeBytesSent);
+    }
+
+    public void reset() {
+        this.changeBytes = 0;
+        this.changeBytesSent = 0;
+        this.baselineBytesSent = 0;
+        this.packetsSent = 0;
+        this.deferredUpdates = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Packets: " + packetsSent + ", change bytes sent: " + changeBytesSent + ", baseline bytes sent: " + baselineBytesSent
+                + ", bytes saved: " + getBytesSaved() + ", deferred updates: " + deferredUpdates;
+    }
+}
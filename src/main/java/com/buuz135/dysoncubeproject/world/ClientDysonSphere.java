@@ -1,7 +1,74 @@
 package com.buuz135.dysoncubeproject.world;
 
+import com.buuz135.dysoncubeproject.DysonCubeProject;
+import com.buuz135.dysoncubeproject.network.ClientRequestSphereResyncMessage;
+import com.buuz135.dysoncubeproject.network.ClientWatchSphereMessage;
+import com.buuz135.dysoncubeproject.network.DysonSphereCodec;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.client.Minecraft;
+import net.minecraft.network.FriendlyByteBuf;
+
 public class ClientDysonSphere {
 
     public static DysonSphereProgressSavedData DYSON_SPHERE_PROGRESS = new DysonSphereProgressSavedData();
 
+    private static final Int2ObjectOpenHashMap<String> SPHERE_IDS = new Int2ObjectOpenHashMap<>();
+    private static long syncVersion = 0;
+    private static boolean awaitingBaseline = false;
+    private static String watchedMenuSphere = null;
+
+    /**
+     * Asks the server to keep the sphere shown in the open menu updated, until {@link #stopWatchingFromMenu()}.
+     */
+    public static void watchFromMenu(String sphereId) {
+        if (sphereId.equals(watchedMenuSphere)) return;
+        watchedMenuSphere = sphereId;
+        DysonCubeProject.NETWORK.sendToServer(new ClientWatchSphereMessage(sphereId, true));
+    }
+
+    public static void stopWatchingFromMenu() {
+        if (watchedMenuSphere == null) return;
+        DysonCubeProject.NETWORK.sendToServer(new ClientWatchSphereMessage(watchedMenuSphere, false));
+        watchedMenuSphere = null;
+    }
+
+    public static void onIdTable(FriendlyByteBuf buf) {
+        DysonSphereCodec.readDeclarations(buf, SPHERE_IDS);
+    }
+
+    public static void onBaseline(FriendlyByteBuf buf, long version) {
+        var data = new DysonSphereProgressSavedData();
+        DYSON_SPHERE_PROGRESS = data;
+        syncVersion = version;
+        awaitingBaseline = false;
+        if (!DysonSphereCodec.readPayload(buf, SPHERE_IDS, data, Minecraft.getInstance().player.getUUID())) {
+            requestResync();
+        }
+    }
+
+    public static void onDelta(FriendlyByteBuf buf, long baseVersion, long version) {
+        if (awaitingBaseline) return;
+        if (version <= syncVersion) return; // Duplicate or late delta, already covered by what we have
+        if (baseVersion != syncVersion || !DysonSphereCodec.readPayload(buf, SPHERE_IDS, DYSON_SPHERE_PROGRESS, Minecraft.getInstance().player.getUUID())) {
+            // We missed at least one delta, the local state can't be trusted anymore
+            requestResync();
+            return;
+        }
+        syncVersion = version;
+    }
+
+    public static void reset() {
+        DYSON_SPHERE_PROGRESS = new DysonSphereProgressSavedData();
+        SPHERE_IDS.clear();
+        syncVersion = 0;
+        awaitingBaseline = false;
+        watchedMenuSphere = null;
+    }
+
+    private static void requestResync() {
+        awaitingBaseline = true;
+        SPHERE_IDS.clear();
+        DysonCubeProject.NETWORK.sendToServer(new ClientRequestSphereResyncMessage());
+    }
+
 }
@@ -0,0 +1,19 @@
+package com.buuz135.dysoncubeproject.world;
+
+/**
+ * A block that gets power pushed to it by the sphere it's linked to, see {@link SphereReceiverRegistry}.
+ */
+public interface DysonPowerReceiver {
+
+    /**
+     * @return how much power the receiver can take this tick, 0 if it can't receive right now
+     */
+    long getPowerDemand();
+
+    /**
+     * @return the order receivers are filled in with the priority policy, higher first
+     */
+    int getPriority();
+
+    void receivePower(long amount);
+}
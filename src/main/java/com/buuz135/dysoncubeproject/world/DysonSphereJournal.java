@@ -0,0 +1,217 @@
+package com.buuz135.dysoncubeproject.world;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Append only log of sphere mutations written between saves so launches, command edits and subscriptions survive a
+ * crash. Entries store the absolute state after the change, so replaying a segment that was already saved is harmless.
+ * <p>
+ * The journal is split in numbered segments, a new one is started on every save and the segments covered by the
+ * previous save are deleted in the background.
+ * <p>
+ * Entries are handed to the OS every tick, which is enough to survive the server process crashing. Surviving a power
+ * loss or OS crash needs them on disk, which {@link #force()} does every few ticks as configured, so those lose at most
+ * the changes since the last force.
+ */
+public class DysonSphereJournal {
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal_(\\d+)\\.log");
+
+    private static final byte SPHERE_ENTRY = 1;
+    private static final byte SUBSCRIPTION_ENTRY = 2;
+
+    private final Path directory;
+    private final ByteBuffer buffer;
+    private FileChannel channel;
+    private long segment;
+    private boolean unforced;
+
+    public DysonSphereJournal(Path directory) {
+        this.directory = directory;
+        this.buffer = ByteBuffer.allocateDirect(64 * 1024);
+        this.segment = -1;
+    }
+
+    /**
+     * Applies every existing segment, oldest first, stopping at the first truncated entry of each segment.
+     */
+    public void replay(Replayer replayer) {
+        for (long number : listSegments()) {
+            var file = getSegmentFile(number);
+            try {
+                var data = ByteBuffer.wrap(Files.readAllBytes(file));
+                while (data.hasRemaining()) {
+                    byte type = data.get();
+                    if (type == SPHERE_ENTRY) {
+                        var sphereId = readString(data);
+                        int beams = data.getInt();
+                        int solarPanels = data.getInt();
+                        replayer.onSphere(sphereId, beams, solarPanels);
+                    } else if (type == SUBSCRIPTION_ENTRY) {
+                        var player = new UUID(data.getLong(), data.getLong());
+                        replayer.onSubscription(player, readString(data));
+                    } else {
+                        LOGGER.warn("Unknown dyson sphere journal entry {} in {}, skipping the rest of it", type, file);
+                        break;
+                    }
+                }
+            } catch (BufferUnderflowException e) {
+                LOGGER.warn("Dyson sphere journal {} ends with a partial entry, it was ignored", file);
+            } catch (IOException e) {
+                LOGGER.error("Could not read dyson sphere journal {}", file, e);
+            }
+            this.segment = Math.max(this.segment, number);
+        }
+    }
+
+    /**
+     * Starts appending to a new segment, must be called after {@link #replay(Replayer)}.
+     */
+    public void open() {
+        ++this.segment;
+        try {
+            Files.createDirectories(this.directory);
+            this.channel = FileChannel.open(getSegmentFile(this.segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            LOGGER.error("Could not open dyson sphere journal, changes will only be saved with the world", e);
+            this.channel = null;
+        }
+    }
+
+    public void appendSphere(String sphereId, int beams, int solarPanels) {
+        if (this.channel == null) return;
+        var id = sphereId.getBytes(StandardCharsets.UTF_8);
+        ensureSpace(1 + 2 + id.length + 8);
+        this.buffer.put(SPHERE_ENTRY).putShort((short) id.length).put(id).putInt(beams).putInt(solarPanels);
+    }
+
+    public void appendSubscription(UUID player, String sphereId) {
+        if (this.channel == null) return;
+        var id = sphereId.getBytes(StandardCharsets.UTF_8);
+        ensureSpace(1 + 16 + 2 + id.length);
+        this.buffer.put(SUBSCRIPTION_ENTRY).putLong(player.getMostSignificantBits()).putLong(player.getLeastSignificantBits()).putShort((short) id.length).put(id);
+    }
+
+    /**
+     * Writes the buffered entries to the current segment.
+     */
+    public void flush() {
+        if (this.channel == null || this.buffer.position() == 0) return;
+        this.buffer.flip();
+        try {
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+            this.unforced = true;
+        } catch (IOException e) {
+            LOGGER.error("Could not write dyson sphere journal", e);
+        }
+        this.buffer.clear();
+    }
+
+    /**
+     * Makes sure the entries written so far reached the disk, does nothing if nothing was written since the last call.
+     */
+    public void force() {
+        if (this.channel == null || !this.unforced) return;
+        try {
+            this.channel.force(false);
+            this.unforced = false;
+        } catch (IOException e) {
+            LOGGER.error("Could not force dyson sphere journal to disk", e);
+        }
+    }
+
+    /**
+     * Closes the current segment and starts a new one. Segments older than the one just closed were covered by the
+     * previous save and are deleted on the given executor, the closed one is kept until the next save.
+     *
+     * @param saved checked on the executor before deleting, old segments are kept for a later rotation if it's false
+     */
+    public void rotate(Executor executor, BooleanSupplier saved) {
+        if (this.channel == null) return;
+        close();
+        long closed = this.segment;
+        open();
+        executor.execute(() -> {
+            if (!saved.getAsBoolean()) {
+                LOGGER.warn("Dyson sphere shards failed to save, keeping the journal until they do");
+                return;
+            }
+            for (long number : listSegments()) {
+                if (number >= closed) break;
+                try {
+                    Files.deleteIfExists(getSegmentFile(number));
+                } catch (IOException e) {
+                    LOGGER.error("Could not delete dyson sphere journal segment {}", number, e);
+                }
+            }
+        });
+    }
+
+    public void close() {
+        if (this.channel == null) return;
+        flush();
+        force();
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            LOGGER.error("Could not close dyson sphere journal", e);
+        }
+        this.channel = null;
+    }
+
+    private void ensureSpace(int bytes) {
+        if (this.buffer.remaining() < bytes) flush();
+    }
+
+    private Path getSegmentFile(long number) {
+        return this.directory.resolve("journal_" + number + ".log");
+    }
+
+    private List<Long> listSegments() {
+        var segments = new ArrayList<Long>();
+        if (!Files.isDirectory(this.directory)) return segments;
+        try (Stream<Path> files = Files.list(this.directory)) {
+            files.forEach(path -> {
+                var matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) segments.add(Long.parseLong(matcher.group(1)));
+            });
+        } catch (IOException e) {
+            LOGGER.error("Could not list dyson sphere journal segments", e);
+        }
+        segments.sort(Long::compare);
+        return segments;
+    }
+
+    private static String readString(ByteBuffer data) {
+        var bytes = new byte[data.getShort() & 0xFFFF];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public interface Replayer {
+
+        void onSphere(String sphereId, int beams, int solarPanels);
+
+        void onSubscription(UUID player, String sphereId);
+    }
+}
@@ -1,77 +1,395 @@
 package com.buuz135.dysoncubeproject.world;
 
 
+import com.buuz135.dysoncubeproject.Config;
+import com.buuz135.dysoncubeproject.DysonCubeProject;
 import net.minecraft.core.HolderLookup;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.saveddata.SavedData;
+import net.minecraft.world.level.storage.LevelResource;
 
-import java.util.HashMap;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DysonSphereProgressSavedData extends SavedData {
 
     public static final String ID = "dyson_sphere_progress";
 
-    private HashMap<String, DysonSphereStructure> spheres;
-    private HashMap<String, String> subscribedPlayers;
+    private static final int UNLOAD_CHECK_INTERVAL = 20 * 60;
+
+    private static volatile MinecraftServer cachedServer;
+    private static volatile DysonSphereProgressSavedData cachedData;
+
+    private final ConcurrentHashMap<String, DysonSphereStructure> spheres;
+    private final SphereSubscriptionIndex subscriptions;
+    private final DysonSphereRegistry registry;
+    private final DysonSphereStorage storage;
+    private final DysonSphereJournal journal;
+    private final HolderLookup.Provider provider;
+    private final DysonSphereSimulation simulation;
+    private final SphereReceiverRegistry receivers;
+    private long ticks;
+    // Spheres migrated from this file, kept in it until their shards are known to be on disk
+    private CompoundTag legacySpheres;
 
     public DysonSphereProgressSavedData() {
+        this(null, null);
+    }
+
+    /**
+     * @param storage the shard storage the spheres are loaded from and saved to, null on the client
+     */
+    public DysonSphereProgressSavedData(DysonSphereStorage storage, HolderLookup.Provider provider) {
         super();
-        this.spheres = new HashMap<>();
-        this.subscribedPlayers = new HashMap<>();
+        this.provider = provider;
+        this.spheres = new ConcurrentHashMap<>();
+        this.subscriptions = new SphereSubscriptionIndex();
+        this.registry = new DysonSphereRegistry();
+        this.storage = storage;
+        this.journal = storage == null ? null : new DysonSphereJournal(storage.getDirectory());
+        this.simulation = storage == null ? null : new DysonSphereSimulation(() -> this.ticks);
+        this.receivers = new SphereReceiverRegistry();
     }
 
+    /**
+     * Gets the server data, resolved once per server and cached until {@link #onServerStopped()}.
+     */
     public static DysonSphereProgressSavedData get(Level level) {
         if (level instanceof ServerLevel serverLevel) {
-            ServerLevel serverWorld = serverLevel.getServer().getLevel(Level.OVERWORLD);
-            DysonSphereProgressSavedData data = serverWorld.getDataStorage().computeIfAbsent(
-                    new Factory<>(DysonSphereProgressSavedData::new, (compoundTag, provider) -> DysonSphereProgressSavedData.load(provider, compoundTag)), ID);
-            return data;
+            var server = serverLevel.getServer();
+            if (cachedServer != server) {
+                onServerStarted(server);
+            }
+            return cachedData;
         }
         return null;
     }
 
-    public static DysonSphereProgressSavedData load(HolderLookup.Provider provider, CompoundTag compoundTag) {
-        var data = new DysonSphereProgressSavedData();
+    public static void onServerStarted(MinecraftServer server) {
+        ServerLevel serverWorld = server.getLevel(Level.OVERWORLD);
+        cachedData = serverWorld.getDataStorage().computeIfAbsent(
+                new Factory<>(() -> DysonSphereProgressSavedData.create(createStorage(serverWorld), serverWorld.registryAccess()).openJournal(), (compoundTag, provider) -> DysonSphereProgressSavedData.load(createStorage(serverWorld), provider, compoundTag)), ID);
+        cachedServer = server;
+    }
+
+    public static void onServerStopped() {
+        if (cachedData != null) cachedData.journal.close();
+        cachedServer = null;
+        cachedData = null;
+    }
+
+    private static DysonSphereStorage createStorage(ServerLevel level) {
+        return new DysonSphereStorage(level.getServer().getWorldPath(LevelResource.ROOT).resolve("data").resolve(DysonCubeProject.MODID).resolve("spheres"));
+    }
+
+    private static DysonSphereProgressSavedData create(DysonSphereStorage storage, HolderLookup.Provider provider) {
+        return new DysonSphereProgressSavedData(storage, provider);
+    }
+
+    public static DysonSphereProgressSavedData load(DysonSphereStorage storage, HolderLookup.Provider provider, CompoundTag compoundTag) {
+        var data = create(storage, provider);
+        // Spheres used to be stored in this file, move them over to the shards and drop them from here on next save
         var spheres = compoundTag.getCompound("spheres");
         for (String key : spheres.getAllKeys()) {
-            data.spheres.put(key, new DysonSphereStructure());
-            data.spheres.get(key).deserializeNBT(provider, spheres.getCompound(key));
+            if (data.getSphere(key) != null) continue;
+            data.createSphere(data.getSphereHandle(key), spheres.getCompound(key));
+            storage.markDirty(key);
+            data.setDirty();
+        }
+        if (!spheres.isEmpty()) {
+            data.legacySpheres = spheres;
+            data.writeMigratedSpheres();
         }
+        var subscriptions = compoundTag.getList("subscriptions", Tag.TAG_COMPOUND);
+        for (int i = 0; i < subscriptions.size(); i++) {
+            var subscription = subscriptions.getCompound(i);
+            data.subscriptions.subscribe(subscription.getUUID("player"), data.getSphereHandle(subscription.getString("sphere")));
+        }
+        // Subscriptions used to be saved as player uuid string to sphere id
         var subscribedPlayers = compoundTag.getCompound("subscribedPlayers");
         for (String key : subscribedPlayers.getAllKeys()) {
-            data.subscribedPlayers.put(key, subscribedPlayers.getString(key));
+            try {
+                data.subscriptions.subscribe(UUID.fromString(key), data.getSphereHandle(subscribedPlayers.getString(key)));
+                data.setDirty();
+            } catch (IllegalArgumentException e) {
+                // Not a player, nothing to migrate
+            }
         }
-        return data;
+        return data.openJournal();
     }
 
-    @Override
-    public CompoundTag save(CompoundTag compoundTag, HolderLookup.Provider provider) {
-        var spheres = new CompoundTag();
-        for (String key : this.spheres.keySet()) {
-            spheres.put(key, this.spheres.get(key).serializeNBT(provider));
+    /**
+     * Applies the changes journaled since the last save on top of the loaded data and starts journaling new ones.
+     */
+    private DysonSphereProgressSavedData openJournal() {
+        this.journal.replay(new DysonSphereJournal.Replayer() {
+            @Override
+            public void onSphere(String sphereId, int beams, int solarPanels) {
+                var sphere = getOrCreateSphere(sphereId);
+                sphere.setBeams(beams);
+                sphere.setSolarPanels(solarPanels);
+            }
+
+            @Override
+            public void onSubscription(UUID player, String sphereId) {
+                subscribe(player, sphereId);
+            }
+        });
+        this.journal.open();
+        return this;
+    }
+
+    /**
+     * Creates a sphere for the handle and adds it to the loaded ones, on the server it's placed straight in the
+     * handle's simulation slot.
+     *
+     * @param tag the saved sphere to restore before it's visible to other threads, null for an empty one
+     */
+    private DysonSphereStructure createSphere(int handle, @Nullable CompoundTag tag) {
+        var sphereId = this.registry.getId(handle);
+        DysonSphereStructure sphere;
+        if (this.storage != null) {
+            var created = new DysonSphereStructure(this.simulation, handle);
+            created.setPersistentChangeListener(() -> {
+                this.storage.markDirty(sphereId);
+                this.journal.appendSphere(sphereId, created.getBeams(), created.getSolarPanels());
+            });
+            sphere = created;
+        } else {
+            sphere = new DysonSphereStructure();
         }
-        var subscribedPlayers = new CompoundTag();
-        for (String key : this.subscribedPlayers.keySet()) {
-            subscribedPlayers.putString(key, this.subscribedPlayers.get(key));
+        if (tag != null) sphere.deserializeNBT(this.provider, tag);
+        this.spheres.put(sphereId, sphere);
+        this.registry.set(handle, sphere);
+        return sphere;
+    }
+
+    /**
+     * Queues a background write of the shards holding spheres that changed since the last call and starts a new
+     * journal segment. Subscriptions are saved with the regular {@link SavedData} file.
+     */
+    public void saveSpheres() {
+        if (this.storage == null) return;
+        int failures = this.storage.getWriteFailures();
+        if (this.legacySpheres != null) {
+            writeMigratedSpheres();
+        } else {
+            this.storage.save(this.spheres);
         }
+        // Checked after this save's shard writes on the same writer, a failed write keeps the segments it would cover
+        this.journal.rotate(DysonSphereStorage.WRITER, () -> this.storage.getWriteFailures() == failures);
+    }
+
+    /**
+     * Writes the shards and waits for them, the legacy tag is only dropped from this file once nothing failed, so a
+     * crash right after upgrading a world can't lose its spheres.
+     */
+    private void writeMigratedSpheres() {
+        this.storage.save(this.spheres);
+        DysonSphereStorage.flushPendingWrites();
+        if (!this.storage.hasFailedWrites()) {
+            this.legacySpheres = null;
+        }
+        setDirty();
+    }
+
+    /**
+     * Advances the clock sphere power is generated against, pushes power to the loaded receivers, writes the changes
+     * journaled last tick, periodically forces the journal to disk and unloads idle spheres. Called once at the start of every server tick.
+     */
+    public void tick(MinecraftServer server) {
+        ++this.ticks;
+        if (Config.SIMULATION_EAGER_TICKING) this.simulation.tick();
+        this.receivers.distribute(this);
+        this.journal.flush();
+        if (this.ticks % Config.JOURNAL_FORCE_INTERVAL == 0) this.journal.force();
+        if (this.ticks % UNLOAD_CHECK_INTERVAL == 0) {
+            unloadIdleSpheres(server);
+        }
+    }
+
+    /**
+     * Drops spheres nothing used for a while from memory, they are read back from their shard when needed again.
+     * Spheres of online players are always kept.
+     */
+    private void unloadIdleSpheres(MinecraftServer server) {
+        for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+            markActive(getSphereHandle(getSubscribedFor(player.getUUID())));
+        }
+        var iterator = this.spheres.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            int handle = this.registry.intern(entry.getKey());
+            if (this.registry.hasLoadedBlocks(handle)) continue;
+            if (this.ticks - this.registry.getLastActive(handle) < Config.SPHERE_UNLOAD_TIMEOUT) continue;
+            if (!this.storage.canUnload(entry.getKey())) continue;
+            iterator.remove();
+            this.registry.set(handle, null);
+        }
+    }
+
+    public SphereReceiverRegistry getReceivers() {
+        return receivers;
+    }
+
+    /**
+     * Keeps the sphere loaded for as long as the block stays loaded, even while the block isn't ticking. Every call has
+     * to be matched by {@link #removeLoadedBlock(int)}.
+     */
+    public void addLoadedBlock(int handle) {
+        this.registry.addLoadedBlock(handle);
+    }
+
+    public void removeLoadedBlock(int handle) {
+        this.registry.removeLoadedBlock(handle);
+    }
+
+    /**
+     * Keeps the sphere from being unloaded, block entities linked to a sphere call it every tick.
+     */
+    public void markActive(int handle) {
+        this.registry.setLastActive(handle, this.ticks);
+    }
+
+    @Override
+    public CompoundTag save(CompoundTag compoundTag, HolderLookup.Provider provider) {
+        var subscriptions = new ListTag();
+        this.subscriptions.forEach((player, handle) -> {
+            var subscription = new CompoundTag();
+            subscription.putUUID("player", player);
+            subscription.putString("sphere", this.registry.getId(handle));
+            subscriptions.add(subscription);
+        });
 
         var tag = new CompoundTag();
-        tag.put("spheres", spheres);
-        tag.put("subscribedPlayers", subscribedPlayers);
+        tag.put("subscriptions", subscriptions);
+        if (this.legacySpheres != null) tag.put("spheres", this.legacySpheres);
         return tag;
     }
 
-    public HashMap<String, DysonSphereStructure> getSpheres() {
-        return spheres;
+    /**
+     * @return a read only view of the loaded spheres by id, use {@link #getOrCreateSphere(String)} and
+     * {@link #removeSphere(String)} to modify it
+     */
+    public Map<String, DysonSphereStructure> getSpheres() {
+        return Collections.unmodifiableMap(spheres);
+    }
+
+    /**
+     * @return the ids of every sphere, loaded or only saved to its shard
+     */
+    public Set<String> getKnownSphereIds() {
+        var ids = new HashSet<>(this.spheres.keySet());
+        if (this.storage != null) ids.addAll(this.storage.getSavedIds());
+        return ids;
+    }
+
+    /**
+     * Gets the handle of the given sphere id, meant to be resolved once and cached by callers that look the same
+     * sphere up often. Handles aren't stable across server restarts.
+     */
+    public int getSphereHandle(String sphereId) {
+        return this.registry.intern(sphereId);
+    }
+
+    /**
+     * Gets the sphere for the given handle, reading it from its shard if it isn't loaded.
+     *
+     * @return the sphere, or null if it wasn't created yet
+     */
+    public DysonSphereStructure getSphere(int handle) {
+        var sphere = this.registry.get(handle);
+        if (sphere == null) {
+            sphere = loadSphere(handle);
+            if (sphere == null) return null;
+        }
+        markActive(handle);
+        return sphere;
+    }
+
+    public DysonSphereStructure getSphere(String sphereId) {
+        return getSphere(getSphereHandle(sphereId));
+    }
+
+    /**
+     * Gets the sphere for the given handle only if it is already loaded, without reading its shard or keeping it
+     * loaded. Safe to call from other threads, such as energy networks transferring power off the server thread.
+     */
+    public DysonSphereStructure getLoadedSphere(int handle) {
+        return this.registry.get(handle);
+    }
+
+    private DysonSphereStructure loadSphere(int handle) {
+        if (this.storage == null || this.registry.isMissing(handle)) return null;
+        var sphereId = this.registry.getId(handle);
+        var tag = this.storage.load(sphereId);
+        if (tag == null) {
+            this.registry.setMissing(handle);
+            return null;
+        }
+        return createSphere(handle, tag);
+    }
+
+    /**
+     * Gets the sphere for the given handle, loading or creating it if needed. Spheres created here dirty their shard
+     * when their beams or sails change.
+     */
+    public DysonSphereStructure getOrCreateSphere(int handle) {
+        var sphere = getSphere(handle);
+        if (sphere == null) {
+            sphere = createSphere(handle, null);
+            if (this.storage != null) this.storage.markDirty(this.registry.getId(handle));
+            markActive(handle);
+        }
+        return sphere;
     }
 
-    public HashMap<String, String> getSubscribedPlayers() {
-        return subscribedPlayers;
+    public DysonSphereStructure getOrCreateSphere(String sphereId) {
+        return getOrCreateSphere(getSphereHandle(sphereId));
     }
 
-    public String getSubscribedFor(String playerUUID) {
-        return subscribedPlayers.getOrDefault(playerUUID, playerUUID);
+    public void removeSphere(String sphereId) {
+        if (this.spheres.remove(sphereId) != null) {
+            this.registry.set(this.registry.intern(sphereId), null);
+        }
+    }
+
+    /**
+     * @return the id of the sphere the player is subscribed to, players that never subscribed use their own sphere
+     */
+    public String getSubscribedFor(UUID player) {
+        int handle = this.subscriptions.getSubscription(player);
+        return handle == -1 ? player.toString() : this.registry.getId(handle);
+    }
+
+    /**
+     * @return the players subscribed to the given sphere, not including players that never subscribed and default
+     * to their own sphere
+     */
+    public Set<UUID> getSubscribers(String sphereId) {
+        return this.subscriptions.getSubscribers(getSphereHandle(sphereId));
+    }
+
+    /**
+     * @return true if the player was not already subscribed to that sphere
+     */
+    public boolean subscribe(UUID player, String sphereId) {
+        if (this.subscriptions.subscribe(player, getSphereHandle(sphereId))) {
+            if (this.journal != null) this.journal.appendSubscription(player, sphereId);
+            this.setDirty();
+            return true;
+        }
+        return false;
     }
 }
@@ -0,0 +1,106 @@
+package com.buuz135.dysoncubeproject.world;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns sphere ids to dense int handles so hot paths can look spheres up by array index instead of hashing the id.
+ * Handles are only valid for the lifetime of the saved data that owns the registry and are never persisted.
+ * <p>
+ * Interning and sphere lookups are safe from any thread, activity and missing tracking belong to the server thread.
+ */
+public class DysonSphereRegistry {
+
+    private final ConcurrentHashMap<String, Integer> handles;
+    private volatile String[] ids;
+    private volatile DysonSphereStructure[] spheres;
+    private int size;
+    private long[] lastActive;
+    private int[] loadedBlocks;
+    private final BitSet missing;
+
+    public DysonSphereRegistry() {
+        this.handles = new ConcurrentHashMap<>();
+        this.ids = new String[16];
+        this.spheres = new DysonSphereStructure[16];
+        this.lastActive = new long[16];
+        this.loadedBlocks = new int[16];
+        this.missing = new BitSet();
+    }
+
+    /**
+     * Gets the handle for the given id, assigning a new one if the id was never seen. This doesn't create a sphere.
+     */
+    public int intern(String sphereId) {
+        var handle = this.handles.get(sphereId);
+        return handle == null ? assign(sphereId) : handle;
+    }
+
+    private synchronized int assign(String sphereId) {
+        var existing = this.handles.get(sphereId);
+        if (existing != null) return existing;
+        int handle = this.size++;
+        if (handle >= this.ids.length) {
+            int capacity = this.ids.length * 2;
+            this.spheres = Arrays.copyOf(this.spheres, capacity);
+            this.lastActive = Arrays.copyOf(this.lastActive, capacity);
+            this.loadedBlocks = Arrays.copyOf(this.loadedBlocks, capacity);
+            this.ids = Arrays.copyOf(this.ids, capacity);
+        }
+        this.ids[handle] = sphereId;
+        // Published last, a handle is never seen before its id and sphere slot exist
+        this.handles.put(sphereId, handle);
+        return handle;
+    }
+
+    public String getId(int handle) {
+        return this.ids[handle];
+    }
+
+    public DysonSphereStructure get(int handle) {
+        var spheres = this.spheres;
+        return handle < spheres.length ? spheres[handle] : null;
+    }
+
+    public synchronized void set(int handle, DysonSphereStructure sphere) {
+        this.spheres[handle] = sphere;
+        // Volatile write so other threads see the new slot
+        this.spheres = this.spheres;
+        if (sphere != null) this.missing.clear(handle);
+    }
+
+    public long getLastActive(int handle) {
+        return this.lastActive[handle];
+    }
+
+    public void setLastActive(int handle, long tick) {
+        this.lastActive[handle] = tick;
+    }
+
+    public void addLoadedBlock(int handle) {
+        ++this.loadedBlocks[handle];
+    }
+
+    public void removeLoadedBlock(int handle) {
+        --this.loadedBlocks[handle];
+    }
+
+    /**
+     * @return true if a block linked to the sphere is loaded, such spheres are never unloaded
+     */
+    public boolean hasLoadedBlocks(int handle) {
+        return this.loadedBlocks[handle] > 0;
+    }
+
+    /**
+     * @return true if the storage was already checked and has no sphere for this handle
+     */
+    public boolean isMissing(int handle) {
+        return this.missing.get(handle);
+    }
+
+    public void setMissing(int handle) {
+        this.missing.set(handle);
+    }
+}
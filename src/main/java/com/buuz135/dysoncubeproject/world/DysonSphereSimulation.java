@@ -0,0 +1,335 @@
+package com.buuz135.dysoncubeproject.world;
+
+import com.buuz135.dysoncubeproject.Config;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongSupplier;
+
+/**
+ * Sphere state stored as parallel arrays indexed by sphere handle, {@link DysonSphereStructure} is a view over one
+ * slot. Power is normally brought up to date lazily when a sphere is read, {@link #tick()} updates every slot at once
+ * for servers that want it ticked eagerly.
+ * <p>
+ * The energy ledger is safe to use from any thread: power is extracted with a compare and swap on the stored power
+ * and consumption is added atomically. Arrays are split in fixed size pages that never move, so growing the simulation
+ * never loses a concurrent write. Beams and sails are only written from the server thread.
+ */
+public class DysonSphereSimulation {
+
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // More than a tick behind any clock, so the first update fills the sphere
+    private static final long NEVER_UPDATED = -2;
+
+    private final LongSupplier clock;
+    private volatile Page[] pages;
+    private volatile int size;
+
+    /**
+     * @param clock the tick counter power is generated against
+     */
+    public DysonSphereSimulation(LongSupplier clock) {
+        this.clock = clock;
+        this.pages = new Page[0];
+    }
+
+    private DysonSphereSimulation(Page page) {
+        this.clock = null;
+        this.pages = new Page[]{page};
+        this.size = 1;
+    }
+
+    /**
+     * Creates a simulation holding a single sphere at index 0 that never generates power, for spheres that aren't part
+     * of a server's simulation. It can't grow past that slot.
+     */
+    public static DysonSphereSimulation detached() {
+        return new DysonSphereSimulation(new Page(1));
+    }
+
+    /**
+     * Grows the simulation so the given index is valid, new slots start empty with every field flagged as changed.
+     * Only called from the thread that owns the simulation.
+     */
+    public void ensureSize(int size) {
+        if (size <= this.size) return;
+        var pages = this.pages;
+        int pageCount = (size + PAGE_MASK) >>> PAGE_BITS;
+        if (pageCount > pages.length) {
+            pages = Arrays.copyOf(pages, pageCount);
+            for (int i = this.pages.length; i < pageCount; i++) {
+                pages[i] = new Page(PAGE_SIZE);
+            }
+            this.pages = pages;
+        }
+        this.size = size;
+    }
+
+    private Page page(int index) {
+        return this.pages[index >>> PAGE_BITS];
+    }
+
+    private static int slot(int index) {
+        return index & PAGE_MASK;
+    }
+
+    /**
+     * Empties a slot for a sphere that is created or loaded into it, before the slot is shared with other threads.
+     */
+    public void reset(int index) {
+        ensureSize(index + 1);
+        var page = page(index);
+        int slot = slot(index);
+        page.beams[slot] = 0;
+        page.solarPanels[slot] = 0;
+        page.storedPower[slot] = 0;
+        page.lastConsumedPower[slot] = 0;
+        page.lastUpdateTick[slot] = NEVER_UPDATED;
+        page.changedFields[slot] = DysonSphereStructure.ALL_CHANGED;
+        // A reloaded sphere lands on the slot it had before, keep its version moving forward so clients that saw the
+        // old one don't mistake the reloaded state for something they already have
+        ++page.version[slot];
+        page.publishedConsumedPower[slot] = 0;
+        VarHandle.releaseFence();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getBeams(int index) {
+        return (int) INTS.getAcquire(page(index).beams, slot(index));
+    }
+
+    public void setBeams(int index, int beams) {
+        INTS.setRelease(page(index).beams, slot(index), beams);
+    }
+
+    public int getSolarPanels(int index) {
+        return (int) INTS.getAcquire(page(index).solarPanels, slot(index));
+    }
+
+    public void setSolarPanels(int index, int solarPanels) {
+        INTS.setRelease(page(index).solarPanels, slot(index), solarPanels);
+    }
+
+    public long getStoredPower(int index) {
+        update(index);
+        return (long) LONGS.getAcquire(page(index).storedPower, slot(index));
+    }
+
+    public void setStoredPower(int index, long storedPower) {
+        LONGS.setRelease(page(index).storedPower, slot(index), storedPower);
+    }
+
+    public long getLastConsumedPower(int index) {
+        update(index);
+        return (long) LONGS.getAcquire(page(index).lastConsumedPower, slot(index));
+    }
+
+    public void setLastConsumedPower(int index, long lastConsumedPower) {
+        LONGS.setRelease(page(index).lastConsumedPower, slot(index), lastConsumedPower);
+    }
+
+    public long getPublishedConsumedPower(int index) {
+        return (long) LONGS.getAcquire(page(index).publishedConsumedPower, slot(index));
+    }
+
+    /**
+     * Takes up to the given amount out of the stored power.
+     *
+     * @return the amount taken
+     */
+    public long extract(int index, long amount) {
+        update(index);
+        var page = page(index);
+        int slot = slot(index);
+        long stored;
+        long extracted;
+        do {
+            stored = (long) LONGS.getVolatile(page.storedPower, slot);
+            extracted = Math.min(amount, stored);
+            if (extracted <= 0) return 0;
+        } while (!LONGS.compareAndSet(page.storedPower, slot, stored, stored - extracted));
+        LONGS.getAndAdd(page.lastConsumedPower, slot, extracted);
+        return extracted;
+    }
+
+    public void markChanged(int index, int fields) {
+        INTS.getAndBitwiseOr(page(index).changedFields, slot(index), fields);
+    }
+
+    public boolean hasChanges(int index) {
+        update(index);
+        return (int) INTS.getAcquire(page(index).changedFields, slot(index)) != 0;
+    }
+
+    /**
+     * Returns the fields that changed since the last call and bumps the version if there were any.
+     */
+    public int flushChanges(int index) {
+        var page = page(index);
+        int slot = slot(index);
+        int changed = (int) INTS.getAndSet(page.changedFields, slot, 0);
+        if (changed != 0) LONGS.getAndAdd(page.version, slot, 1L);
+        return changed;
+    }
+
+    public void clearChanges(int index) {
+        INTS.setRelease(page(index).changedFields, slot(index), 0);
+    }
+
+    public long getVersion(int index) {
+        return (long) LONGS.getAcquire(page(index).version, slot(index));
+    }
+
+    public void setVersion(int index, long version) {
+        LONGS.setRelease(page(index).version, slot(index), version);
+    }
+
+    /**
+     * Brings stored and consumed power of one slot up to the current tick. Stored power never holds more than one
+     * tick of generation, so any number of elapsed ticks leaves it full, and ticks nobody touched the sphere consumed
+     * nothing.
+     */
+    public void update(int index) {
+        if (this.clock == null) return;
+        update(page(index), slot(index), this.clock.getAsLong(), Config.SYNC_CONSUMPTION_TOLERANCE, Config.POWER_PER_SAIL);
+    }
+
+    /**
+     * Only the thread that moves the slot's last update tick forward refills it. Stored power is refilled before the
+     * consumption is swapped out, so an extraction racing with the refill is counted in one of the two ticks and
+     * never gets power that isn't taken out of the stored amount.
+     */
+    private void update(Page page, int slot, long tick, double tolerance, long powerPerSail) {
+        long last = (long) LONGS.getAcquire(page.lastUpdateTick, slot);
+        if (last == tick || !LONGS.compareAndSet(page.lastUpdateTick, slot, last, tick)) return;
+        LONGS.setVolatile(page.storedPower, slot, (int) INTS.getAcquire(page.solarPanels, slot) * powerPerSail);
+        long consumed = (long) LONGS.getAndSet(page.lastConsumedPower, slot, 0L);
+        publishConsumedPower(page, slot, tick - last > 1 ? 0 : consumed, tolerance);
+    }
+
+    /**
+     * Updates every slot to the current tick, split in fork join chunks once there are more spheres than the
+     * configured threshold. Has to run on the owning thread before anything reads or extracts from a sphere in the
+     * tick, the slots are written without the atomics the lazy path uses.
+     */
+    public void tick() {
+        if (this.clock == null) return;
+        long tick = this.clock.getAsLong();
+        int size = this.size;
+        int threshold = Config.SIMULATION_PARALLEL_THRESHOLD;
+        if (size > threshold) {
+            ForkJoinPool.commonPool().invoke(new TickTask(tick, 0, size, threshold));
+        } else {
+            tickRange(tick, 0, size);
+        }
+    }
+
+    private void tickRange(long tick, int from, int to) {
+        double tolerance = Config.SYNC_CONSUMPTION_TOLERANCE;
+        long powerPerSail = Config.POWER_PER_SAIL;
+        int index = from;
+        while (index < to) {
+            var page = page(index);
+            int start = slot(index);
+            int end = Math.min(PAGE_SIZE, start + (to - index));
+            tickPage(page, start, end, tick, tolerance, powerPerSail);
+            index += end - start;
+        }
+    }
+
+    private static void tickPage(Page page, int start, int end, long tick, double tolerance, long powerPerSail) {
+        for (int slot = start; slot < end; slot++) {
+            long consumed = tick - page.lastUpdateTick[slot] > 1 ? 0 : page.lastConsumedPower[slot];
+            long published = page.publishedConsumedPower[slot];
+            long difference = Math.abs(consumed - published);
+            if (difference > 0 && difference >= tolerance * Math.max(consumed, published)) {
+                page.publishedConsumedPower[slot] = consumed;
+                page.changedFields[slot] |= DysonSphereStructure.LAST_CONSUMED_POWER_CHANGED;
+            }
+        }
+        // Branch free so it can be vectorized
+        for (int slot = start; slot < end; slot++) {
+            page.storedPower[slot] = page.solarPanels[slot] * powerPerSail;
+            page.lastConsumedPower[slot] = 0;
+        }
+        // Readers that see the new tick also see the power written for it
+        VarHandle.releaseFence();
+        Arrays.fill(page.lastUpdateTick, start, end, tick);
+    }
+
+    /**
+     * Stored power is never synced on its own, clients predict it from generation and the last published consumption.
+     * Consumption is only published again once it drifts further than the configured tolerance.
+     */
+    private void publishConsumedPower(Page page, int slot, long consumed, double tolerance) {
+        long published = (long) LONGS.getAcquire(page.publishedConsumedPower, slot);
+        long difference = Math.abs(consumed - published);
+        if (difference > 0 && difference >= tolerance * Math.max(consumed, published)) {
+            LONGS.setRelease(page.publishedConsumedPower, slot, consumed);
+            INTS.getAndBitwiseOr(page.changedFields, slot, DysonSphereStructure.LAST_CONSUMED_POWER_CHANGED);
+        }
+    }
+
+    private static final class Page {
+
+        final int[] beams;
+        final int[] solarPanels;
+        final long[] storedPower;
+        final long[] lastConsumedPower;
+        final long[] lastUpdateTick;
+        // Sync bookkeeping, fields changed since the last flush, flush count and the consumption clients last saw
+        final int[] changedFields;
+        final long[] version;
+        final long[] publishedConsumedPower;
+
+        private Page(int size) {
+            this.beams = new int[size];
+            this.solarPanels = new int[size];
+            this.storedPower = new long[size];
+            this.lastConsumedPower = new long[size];
+            this.lastUpdateTick = new long[size];
+            this.changedFields = new int[size];
+            this.version = new long[size];
+            this.publishedConsumedPower = new long[size];
+            Arrays.fill(this.lastUpdateTick, NEVER_UPDATED);
+            Arrays.fill(this.changedFields, DysonSphereStructure.ALL_CHANGED);
+        }
+    }
+
+    private class TickTask extends RecursiveAction {
+
+        private final long tick;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        private TickTask(long tick, int from, int to, int threshold) {
+            this.tick = tick;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= this.threshold) {
+                tickRange(this.tick, this.from, this.to);
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new TickTask(this.tick, this.from, middle, this.threshold), new TickTask(this.tick, middle, this.to, this.threshold));
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.buuz135.dysoncubeproject.world;
+
+import com.mojang.logging.LogUtils;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.NbtIo;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Stores spheres in shard files keyed by a hash bucket of the sphere id, so a save only rewrites the shards that
+ * contain changed spheres instead of every sphere in the world. Spheres are read from their shard when first needed,
+ * shard writes merge the changed spheres into the existing file so unloaded spheres are kept.
+ */
+public class DysonSphereStorage {
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    public static final int SHARD_COUNT = 256;
+
+    /**
+     * Single writer so writes of the same shard land in the order they were queued.
+     */
+    static final ExecutorService WRITER = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "Dyson Sphere Storage Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path directory;
+    private final HashSet<String>[] changedSpheres;
+    private final BitSet dirtyShards;
+    private final AtomicIntegerArray pendingWrites;
+    private final ConcurrentLinkedQueue<ShardSnapshot> failedWrites;
+    private final AtomicInteger writeFailures;
+    // Ids of every sphere in the shard files, filled in the background when the storage is opened
+    private final Set<String> savedIds;
+
+    @SuppressWarnings("unchecked")
+    public DysonSphereStorage(Path directory) {
+        this.directory = directory;
+        this.changedSpheres = new HashSet[SHARD_COUNT];
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            this.changedSpheres[i] = new HashSet<>();
+        }
+        this.dirtyShards = new BitSet(SHARD_COUNT);
+        this.pendingWrites = new AtomicIntegerArray(SHARD_COUNT);
+        this.failedWrites = new ConcurrentLinkedQueue<>();
+        this.writeFailures = new AtomicInteger();
+        this.savedIds = ConcurrentHashMap.newKeySet();
+        WRITER.execute(this::indexSavedIds);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public static int getShard(String sphereId) {
+        return Math.floorMod(sphereId.hashCode(), SHARD_COUNT);
+    }
+
+    public Path getShardFile(int shard) {
+        return this.directory.resolve(String.format("shard_%02x.dat", shard));
+    }
+
+    /**
+     * @return the ids of the spheres saved in the shard files, including unloaded ones, may miss some while the shards
+     * are still being indexed
+     */
+    public Set<String> getSavedIds() {
+        return Collections.unmodifiableSet(this.savedIds);
+    }
+
+    private void indexSavedIds() {
+        for (int shard = 0; shard < SHARD_COUNT; shard++) {
+            var file = getShardFile(shard);
+            if (!Files.exists(file)) continue;
+            try {
+                this.savedIds.addAll(NbtIo.readCompressed(file, NbtAccounter.unlimitedHeap()).getCompound("spheres").getAllKeys());
+            } catch (IOException e) {
+                LOGGER.error("Could not index dyson sphere shard {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * Reads a single sphere from its shard.
+     *
+     * @return the saved sphere, or null if it was never saved
+     */
+    public CompoundTag load(String sphereId) {
+        var file = getShardFile(getShard(sphereId));
+        if (!Files.exists(file)) return null;
+        try {
+            var tag = NbtIo.readCompressed(file, NbtAccounter.unlimitedHeap()).getCompound("spheres");
+            return tag.contains(sphereId) ? tag.getCompound(sphereId) : null;
+        } catch (IOException e) {
+            LOGGER.error("Could not load dyson sphere shard {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Marks the sphere as changed so it's included in the next write of its shard.
+     */
+    public void markDirty(String sphereId) {
+        int shard = getShard(sphereId);
+        this.changedSpheres[shard].add(sphereId);
+        this.dirtyShards.set(shard);
+    }
+
+    public boolean isDirty() {
+        return !this.dirtyShards.isEmpty();
+    }
+
+    /**
+     * @return true if a shard write failed and wasn't queued again yet
+     */
+    public boolean hasFailedWrites() {
+        return !this.failedWrites.isEmpty();
+    }
+
+    /**
+     * @return how many shard writes failed so far, compare two reads to know if writes queued in between all succeeded
+     */
+    public int getWriteFailures() {
+        return this.writeFailures.get();
+    }
+
+    /**
+     * @return true if the file of the sphere's shard is up to date, so the sphere can be dropped from memory and read
+     * back later
+     */
+    public boolean canUnload(String sphereId) {
+        int shard = getShard(sphereId);
+        return !this.dirtyShards.get(shard) && this.pendingWrites.get(shard) == 0 && this.failedWrites.isEmpty();
+    }
+
+    /**
+     * Snapshots the changed spheres on the calling thread and queues their shards to be written in the background.
+     * Only the beams and sails of the changed spheres are copied here, reading the old shard, serialization and
+     * compression happen on the writer thread.
+     */
+    public void save(Map<String, DysonSphereStructure> spheres) {
+        ShardSnapshot failed;
+        while ((failed = this.failedWrites.poll()) != null) {
+            for (int i = 0; i < failed.size(); i++) {
+                markDirty(failed.ids()[i]);
+            }
+        }
+        for (int shard = this.dirtyShards.nextSetBit(0); shard >= 0; shard = this.dirtyShards.nextSetBit(shard + 1)) {
+            var changed = this.changedSpheres[shard];
+            var ids = new String[changed.size()];
+            var snapshots = new DysonSphereStructure.Snapshot[changed.size()];
+            int size = 0;
+            for (String key : changed) {
+                var sphere = spheres.get(key);
+                if (sphere == null) continue;
+                ids[size] = key;
+                snapshots[size] = sphere.snapshot();
+                ++size;
+            }
+            changed.clear();
+            var snapshot = new ShardSnapshot(shard, getShardFile(shard), ids, snapshots, size);
+            this.pendingWrites.incrementAndGet(shard);
+            WRITER.execute(() -> write(snapshot));
+        }
+        this.dirtyShards.clear();
+    }
+
+    private void write(ShardSnapshot snapshot) {
+        var file = snapshot.file();
+        try {
+            var root = Files.exists(file) ? NbtIo.readCompressed(file, NbtAccounter.unlimitedHeap()) : new CompoundTag();
+            var tag = root.getCompound("spheres");
+            for (int i = 0; i < snapshot.size(); i++) {
+                tag.put(snapshot.ids()[i], snapshot.spheres()[i].serializeNBT());
+            }
+            root.put("spheres", tag);
+            var temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.createDirectories(this.directory);
+            NbtIo.writeCompressed(root, temp);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            for (int i = 0; i < snapshot.size(); i++) {
+                this.savedIds.add(snapshot.ids()[i]);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Could not save dyson sphere shard {}", file, e);
+            this.failedWrites.add(snapshot);
+            this.writeFailures.incrementAndGet();
+        } finally {
+            this.pendingWrites.decrementAndGet(snapshot.shard());
+        }
+    }
+
+    /**
+     * Blocks until every queued shard write has reached the disk.
+     */
+    public static void flushPendingWrites() {
+        try {
+            WRITER.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.error("Could not flush dyson sphere shard writes", e);
+        }
+    }
+
+    private record ShardSnapshot(int shard, Path file, String[] ids, DysonSphereStructure.Snapshot[] spheres,
+                                 int size) {
+    }
+}
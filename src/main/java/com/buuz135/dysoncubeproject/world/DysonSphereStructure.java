@@ -3,47 +3,73 @@ package com.buuz135.dysoncubeproject.world;
 import com.buuz135.dysoncubeproject.Config;
 import net.minecraft.core.HolderLookup;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
 import net.neoforged.neoforge.common.util.INBTSerializable;
 import org.jetbrains.annotations.UnknownNullability;
 
 public class DysonSphereStructure implements INBTSerializable<CompoundTag> {
 
-    private int beams;
-    private int solarPanels;
-    private long storedPower;
-    private long lastConsumedPower;
+    public static final int BEAMS_CHANGED = 1;
+    public static final int SOLAR_PANELS_CHANGED = 1 << 1;
+    public static final int STORED_POWER_CHANGED = 1 << 2;
+    public static final int LAST_CONSUMED_POWER_CHANGED = 1 << 3;
+    public static final int ALL_CHANGED = BEAMS_CHANGED | SOLAR_PANELS_CHANGED | STORED_POWER_CHANGED | LAST_CONSUMED_POWER_CHANGED;
+
+    // The slot of the simulation holding this sphere, a private single slot one for spheres outside a server simulation
+    private DysonSphereSimulation simulation;
+    private int index;
+    // Notified when a persisted field changes, so the owning saved data only gets dirty when it has to
+    private Runnable persistentChangeListener = () -> {};
 
     public DysonSphereStructure() {
         this(0, 0);
     }
 
     public DysonSphereStructure(int beams, int solarPanels) {
-        this.beams = beams;
-        this.solarPanels = solarPanels;
+        this.simulation = DysonSphereSimulation.detached();
+        this.index = 0;
+        this.simulation.setBeams(this.index, beams);
+        this.simulation.setSolarPanels(this.index, solarPanels);
+    }
+
+    /**
+     * Creates an empty sphere in the given slot of a shared simulation. Must happen before the sphere is visible to
+     * other threads.
+     */
+    public DysonSphereStructure(DysonSphereSimulation simulation, int index) {
+        simulation.reset(index);
+        this.simulation = simulation;
+        this.index = index;
     }
 
     public int getBeams() {
-        return beams;
+        return simulation.getBeams(index);
     }
 
     public void setBeams(int beams) {
-        this.beams = beams;
+        if (simulation.getBeams(index) == beams) return;
+        simulation.setBeams(index, beams);
+        simulation.markChanged(index, BEAMS_CHANGED);
+        this.persistentChangeListener.run();
     }
 
     public int getSolarPanels() {
-        return solarPanels;
+        return simulation.getSolarPanels(index);
     }
 
     public void setSolarPanels(int solarPanels) {
-        this.solarPanels = solarPanels;
+        if (simulation.getSolarPanels(index) == solarPanels) return;
+        simulation.setSolarPanels(index, solarPanels);
+        simulation.markChanged(index, SOLAR_PANELS_CHANGED);
+        this.persistentChangeListener.run();
     }
 
     public int getMaxSolarPanels() {
-        return beams * Config.BEAM_TO_SOLAR_PANEL_RATIO;
+        return getBeams() * Config.BEAM_TO_SOLAR_PANEL_RATIO;
     }
 
     public double getProgress() {
-        return solarPanels / (double) Config.MAX_SOLAR_PANELS;
+        return getSolarPanels() / (double) Config.MAX_SOLAR_PANELS;
     }
 
     public int getMaxBeams() {
@@ -51,51 +77,107 @@ public class DysonSphereStructure implements INBTSerializable<CompoundTag> {
     }
 
     public void increaseBeams(int amount) {
-        this.beams += amount;
-        if (this.beams > getMaxBeams()) this.beams = getMaxBeams();
+        setBeams(Math.min(getBeams() + amount, getMaxBeams()));
     }
 
     public void increaseSolarPanels(int amount) {
-        this.solarPanels += amount;
-        if (this.solarPanels > getMaxSolarPanels()) this.solarPanels = getMaxSolarPanels();
-    }
-
-    public void generatePower() {
-        this.lastConsumedPower = 0;
-        long powerGenerated = (long) this.solarPanels * Config.POWER_PER_SAIL;
-        this.storedPower = Math.min(powerGenerated, this.storedPower + powerGenerated);
+        setSolarPanels(Math.min(getSolarPanels() + amount, getMaxSolarPanels()));
     }
 
+    /**
+     * Safe to call from any thread, concurrent extractions never take more than the stored power.
+     */
     public long extractPower(long amount) {
-        long extracted = Math.min(amount, this.storedPower);
-        this.storedPower -= extracted;
-        this.lastConsumedPower += extracted;
-        return extracted;
+        return simulation.extract(index, amount);
     }
 
     public long getStoredPower() {
-        return storedPower;
+        return simulation.getStoredPower(index);
     }
 
     public long getLastConsumedPower() {
-        return lastConsumedPower;
+        return simulation.getLastConsumedPower(index);
+    }
+
+    public void setPersistentChangeListener(Runnable persistentChangeListener) {
+        this.persistentChangeListener = persistentChangeListener;
+    }
+
+    public boolean hasChanges() {
+        return simulation.hasChanges(index);
+    }
+
+    public long getVersion() {
+        return simulation.getVersion(index);
     }
 
+    /**
+     * Returns the fields that changed since the last call and bumps the sphere version if there were any.
+     */
+    public int flushChanges() {
+        return simulation.flushChanges(index);
+    }
+
+    /**
+     * Writes the change mask, the sphere version and only the fields present in the mask. Power is written as of the
+     * last published consumption, the same value clients predict it from.
+     */
+    public void writeDelta(FriendlyByteBuf buf, int fields) {
+        int solarPanels = getSolarPanels();
+        long publishedConsumedPower = simulation.getPublishedConsumedPower(index);
+        buf.writeByte(fields);
+        buf.writeVarLong(getVersion());
+        if ((fields & BEAMS_CHANGED) != 0) buf.writeVarInt(getBeams());
+        if ((fields & SOLAR_PANELS_CHANGED) != 0) buf.writeVarInt(solarPanels);
+        if ((fields & STORED_POWER_CHANGED) != 0) buf.writeVarLong(Math.max(0, (long) solarPanels * Config.POWER_PER_SAIL - publishedConsumedPower));
+        if ((fields & LAST_CONSUMED_POWER_CHANGED) != 0) buf.writeVarLong(publishedConsumedPower);
+    }
+
+    /**
+     * Applies data written by {@link #writeDelta(FriendlyByteBuf, int)}, fields missing from the mask are left untouched.
+     */
+    public void readDelta(FriendlyByteBuf buf) {
+        int fields = buf.readByte();
+        simulation.setVersion(index, buf.readVarLong());
+        if ((fields & BEAMS_CHANGED) != 0) simulation.setBeams(index, buf.readVarInt());
+        if ((fields & SOLAR_PANELS_CHANGED) != 0) simulation.setSolarPanels(index, buf.readVarInt());
+        if ((fields & STORED_POWER_CHANGED) != 0) simulation.setStoredPower(index, buf.readVarLong());
+        if ((fields & LAST_CONSUMED_POWER_CHANGED) != 0) simulation.setLastConsumedPower(index, buf.readVarLong());
+        if ((fields & STORED_POWER_CHANGED) == 0) {
+            // Generation is deterministic, assume consumption holds steady until the server says otherwise
+            simulation.setStoredPower(index, Math.max(0, (long) simulation.getSolarPanels(index) * Config.POWER_PER_SAIL - simulation.getLastConsumedPower(index)));
+        }
+        simulation.clearChanges(index);
+    }
+
+    /**
+     * Captures the persisted state so it can be serialized away from the server thread.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(getBeams(), getSolarPanels());
+    }
+
+    /**
+     * Only beams and sails are persisted, stored and consumed power are rebuilt by the first generation tick.
+     */
     @Override
     public @UnknownNullability CompoundTag serializeNBT(HolderLookup.Provider provider) {
-        CompoundTag compoundTag = new CompoundTag();
-        compoundTag.putInt("beams", beams);
-        compoundTag.putInt("solarPanels", solarPanels);
-        compoundTag.putLong("storedPower", storedPower);
-        compoundTag.putLong("lastConsumedPower", lastConsumedPower);
-        return compoundTag;
+        return snapshot().serializeNBT();
     }
 
     @Override
     public void deserializeNBT(HolderLookup.Provider provider, CompoundTag compoundTag) {
-        this.beams = compoundTag.getInt("beams");
-        this.solarPanels = compoundTag.getInt("solarPanels");
-        this.storedPower = compoundTag.getLong("storedPower");
-        this.lastConsumedPower = compoundTag.getLong("lastConsumedPower");
+        simulation.setBeams(index, compoundTag.getInt("beams"));
+        simulation.setSolarPanels(index, compoundTag.getInt("solarPanels"));
+    }
+
+    public record Snapshot(int beams, int solarPanels) {
+
+        public CompoundTag serializeNBT() {
+            CompoundTag compoundTag = new CompoundTag();
+            compoundTag.putInt("beams", beams);
+            compoundTag.putInt("solarPanels", solarPanels);
+            return compoundTag;
+        }
     }
 }
@@ -0,0 +1,130 @@
+package com.buuz135.dysoncubeproject.world;
+
+import com.buuz135.dysoncubeproject.Config;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Daylight, weather and sun angle of a level, computed once per tick and shared by every ray receiver and ejector in
+ * it, plus a per column cache of sky visibility that is cleared when a block in the column changes.
+ * <p>
+ * Safe to read from other threads, the window is swapped as a whole and the sky cache is guarded by its own lock.
+ */
+public class SolarWindow {
+
+    private static final ConcurrentHashMap<ResourceKey<Level>, SolarWindow> WINDOWS = new ConcurrentHashMap<>();
+
+    private final Level level;
+    private final Long2ObjectOpenHashMap<SkyColumn> skyColumns;
+    private volatile State state;
+
+    private SolarWindow(Level level) {
+        this.level = level;
+        this.skyColumns = new Long2ObjectOpenHashMap<>();
+        this.state = new State(Long.MIN_VALUE, 0, false, false, false, 0);
+    }
+
+    public static SolarWindow get(Level level) {
+        var window = WINDOWS.get(level.dimension());
+        if (window == null || window.level != level) {
+            window = new SolarWindow(level);
+            WINDOWS.put(level.dimension(), window);
+        }
+        return window;
+    }
+
+    /**
+     * Clears the cached sky visibility of the column holding the given position, called for every block change.
+     */
+    public static void onBlockChanged(Level level, BlockPos pos) {
+        var window = WINDOWS.get(level.dimension());
+        if (window == null || window.level != level) return;
+        synchronized (window.skyColumns) {
+            window.skyColumns.remove(ChunkPos.asLong(pos.getX(), pos.getZ()));
+        }
+    }
+
+    public static void onLevelUnload(Level level) {
+        WINDOWS.computeIfPresent(level.dimension(), (key, window) -> window.level == level ? null : window);
+    }
+
+    public static void clear() {
+        WINDOWS.clear();
+    }
+
+    private State state() {
+        var state = this.state;
+        long tick = this.level.getGameTime();
+        if (state.tick != tick) {
+            boolean day = this.level.isDay();
+            boolean raining = this.level.isRaining();
+            long epoch = day == state.day && raining == state.raining ? state.epoch : state.epoch + 1;
+            state = new State(tick, epoch, day, this.level.isNight(), raining, this.level.getTimeOfDay(1f) * 360f);
+            this.state = state;
+        }
+        return state;
+    }
+
+    public boolean isDay() {
+        return state().day;
+    }
+
+    public boolean isNight() {
+        return state().night;
+    }
+
+    public boolean isRaining() {
+        return state().raining;
+    }
+
+    /**
+     * @return a counter that changes every time day or rain start or stop, so blocks can wait for the next one
+     */
+    public long getEpoch() {
+        return state().epoch;
+    }
+
+    /**
+     * @return the sun angle in degrees, 0 at noon
+     */
+    public float getSunAngle() {
+        return state().sunAngle;
+    }
+
+    /**
+     * Cached {@link Level#canSeeSky(BlockPos)}, one entry per column as blocks only look up from a single height.
+     */
+    public boolean canSeeSky(BlockPos pos) {
+        long column = ChunkPos.asLong(pos.getX(), pos.getZ());
+        long tick = this.level.getGameTime();
+        synchronized (this.skyColumns) {
+            var cached = this.skyColumns.get(column);
+            if (cached != null && cached.y == pos.getY() && tick - cached.checked < Config.SKY_VISIBILITY_CACHE_TICKS) {
+                return cached.sky;
+            }
+        }
+        boolean sky = this.level.canSeeSky(pos);
+        synchronized (this.skyColumns) {
+            this.skyColumns.put(column, new SkyColumn(pos.getY(), sky, tick));
+        }
+        return sky;
+    }
+
+    /**
+     * @return true if a ray receiver at the given position can collect power this tick
+     */
+    public boolean canReceive(BlockPos pos) {
+        return isDay() && !isRaining() && canSeeSky(pos.above());
+    }
+
+    private record State(long tick, long epoch, boolean day, boolean night, boolean raining, float sunAngle) {
+    }
+
+    private record SkyColumn(int y, boolean sky, long checked) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.buuz135.dysoncubeproject.world;
+
+/**
+ * Handle of the sphere a block is linked to, resolved on first use and kept until the block's sphere id changes.
+ */
+public class SphereHandleCache {
+
+    private int handle = -1;
+
+    public int get(DysonSphereProgressSavedData data, String sphereId) {
+        if (this.handle == -1) this.handle = data.getSphereHandle(sphereId);
+        return this.handle;
+    }
+
+    public void invalidate() {
+        this.handle = -1;
+    }
+}
@@ -0,0 +1,168 @@
+package com.buuz135.dysoncubeproject.world;
+
+import com.buuz135.dysoncubeproject.Config;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Loaded receivers of each sphere by sphere handle. Once per tick every sphere with receivers splits its stored power
+ * between the receivers that can take it, following the configured {@link Policy}.
+ */
+public class SphereReceiverRegistry {
+
+    private final Int2ObjectOpenHashMap<ArrayList<DysonPowerReceiver>> receivers;
+    private final Int2IntOpenHashMap roundRobinCursors;
+    // Scratch space reused between spheres and ticks
+    private long[] demands;
+    private long[] grants;
+    private int[] order;
+    private int[] priorities;
+
+    public SphereReceiverRegistry() {
+        this.receivers = new Int2ObjectOpenHashMap<>();
+        this.roundRobinCursors = new Int2IntOpenHashMap();
+        this.demands = new long[16];
+        this.grants = new long[16];
+        this.order = new int[16];
+        this.priorities = new int[16];
+    }
+
+    public void register(int handle, DysonPowerReceiver receiver) {
+        var list = this.receivers.computeIfAbsent(handle, h -> new ArrayList<>());
+        if (!list.contains(receiver)) list.add(receiver);
+    }
+
+    public void unregister(int handle, DysonPowerReceiver receiver) {
+        var list = this.receivers.get(handle);
+        if (list == null) return;
+        list.remove(receiver);
+        if (list.isEmpty()) {
+            this.receivers.remove(handle);
+            this.roundRobinCursors.remove(handle);
+        }
+    }
+
+    public void distribute(DysonSphereProgressSavedData data) {
+        var policy = Policy.fromConfig();
+        for (Int2ObjectMap.Entry<ArrayList<DysonPowerReceiver>> entry : this.receivers.int2ObjectEntrySet()) {
+            var sphere = data.getSphere(entry.getIntKey());
+            if (sphere == null) continue;
+            distribute(entry.getIntKey(), sphere, entry.getValue(), policy);
+        }
+    }
+
+    private void distribute(int handle, DysonSphereStructure sphere, ArrayList<DysonPowerReceiver> list, Policy policy) {
+        int size = list.size();
+        if (size > this.demands.length) {
+            int capacity = Math.max(size, this.demands.length * 2);
+            this.demands = new long[capacity];
+            this.grants = new long[capacity];
+            this.order = new int[capacity];
+            this.priorities = new int[capacity];
+        }
+        long totalDemand = 0;
+        for (int i = 0; i < size; i++) {
+            long demand = Math.min(Config.RAY_RECEIVER_EXTRACT_POWER, list.get(i).getPowerDemand());
+            this.demands[i] = Math.max(0, demand);
+            this.grants[i] = 0;
+            totalDemand += this.demands[i];
+        }
+        if (totalDemand == 0) return;
+        long available = sphere.getStoredPower();
+        if (available <= 0) return;
+
+        if (totalDemand <= available) {
+            System.arraycopy(this.demands, 0, this.grants, 0, size);
+        } else {
+            switch (policy) {
+                case ROUND_ROBIN -> shareRoundRobin(handle, size, available);
+                case PROPORTIONAL -> shareProportional(size, available, totalDemand);
+                case PRIORITY -> sharePriority(list, size, available);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (this.grants[i] <= 0) continue;
+            list.get(i).receivePower(sphere.extractPower(this.grants[i]));
+        }
+    }
+
+    /**
+     * Equal shares capped by each receiver's demand, whatever is left after that goes one unit at a time starting from
+     * a cursor that moves every tick so no receiver is always first.
+     */
+    private void shareRoundRobin(int handle, int size, long available) {
+        int unsatisfied = 0;
+        for (int i = 0; i < size; i++) {
+            if (this.demands[i] > 0) ++unsatisfied;
+        }
+        // Water filling, at most one round per receiver as each round satisfies at least one of them or runs out
+        while (available > 0 && unsatisfied > 0) {
+            long share = available / unsatisfied;
+            if (share == 0) break;
+            for (int i = 0; i < size; i++) {
+                long missing = this.demands[i] - this.grants[i];
+                if (missing <= 0) continue;
+                long given = Math.min(share, missing);
+                this.grants[i] += given;
+                available -= given;
+                if (given == missing) --unsatisfied;
+            }
+        }
+        int cursor = this.roundRobinCursors.get(handle) % size;
+        for (int n = 0; n < size && available > 0; n++) {
+            int i = (cursor + n) % size;
+            if (this.grants[i] < this.demands[i]) {
+                ++this.grants[i];
+                --available;
+            }
+        }
+        this.roundRobinCursors.put(handle, (cursor + 1) % size);
+    }
+
+    /**
+     * Shares proportional to how much each receiver asked for.
+     */
+    private void shareProportional(int size, long available, long totalDemand) {
+        double ratio = available / (double) totalDemand;
+        for (int i = 0; i < size; i++) {
+            this.grants[i] = Math.min(this.demands[i], (long) (this.demands[i] * ratio));
+        }
+    }
+
+    /**
+     * Fills receivers fully in priority order until the power runs out.
+     */
+    private void sharePriority(ArrayList<DysonPowerReceiver> list, int size, long available) {
+        // Priorities read the redstone signal, look each one up once instead of on every comparison
+        for (int i = 0; i < size; i++) {
+            this.order[i] = i;
+            this.priorities[i] = list.get(i).getPriority();
+        }
+        int[] priorities = this.priorities;
+        IntArrays.mergeSort(this.order, 0, size, (a, b) -> Integer.compare(priorities[b], priorities[a]));
+        for (int n = 0; n < size && available > 0; n++) {
+            int i = this.order[n];
+            this.grants[i] = Math.min(this.demands[i], available);
+            available -= this.grants[i];
+        }
+    }
+
+    public enum Policy {
+        ROUND_ROBIN,
+        PROPORTIONAL,
+        PRIORITY;
+
+        public static Policy fromConfig() {
+            try {
+                return valueOf(Config.RAY_RECEIVER_DISTRIBUTION.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return ROUND_ROBIN;
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.buuz135.dysoncubeproject.world;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Player to sphere handle subscriptions with a reverse sphere handle to subscribers index, both kept in sync on every
+ * change so either direction is a single lookup.
+ */
+public class SphereSubscriptionIndex {
+
+    private final Object2IntOpenHashMap<UUID> subscriptions;
+    private final Int2ObjectOpenHashMap<ObjectOpenHashSet<UUID>> subscribers;
+
+    public SphereSubscriptionIndex() {
+        this.subscriptions = new Object2IntOpenHashMap<>();
+        this.subscriptions.defaultReturnValue(-1);
+        this.subscribers = new Int2ObjectOpenHashMap<>();
+    }
+
+    /**
+     * @return the handle of the sphere the player is subscribed to, or -1 if the player never subscribed
+     */
+    public int getSubscription(UUID player) {
+        return this.subscriptions.getInt(player);
+    }
+
+    /**
+     * @return true if the subscription changed
+     */
+    public boolean subscribe(UUID player, int handle) {
+        int previous = this.subscriptions.put(player, handle);
+        if (previous == handle) return false;
+        if (previous != -1) removeSubscriber(previous, player);
+        this.subscribers.computeIfAbsent(handle, h -> new ObjectOpenHashSet<>()).add(player);
+        return true;
+    }
+
+    /**
+     * @return true if the player was subscribed to a sphere
+     */
+    public boolean unsubscribe(UUID player) {
+        int previous = this.subscriptions.removeInt(player);
+        if (previous == -1) return false;
+        removeSubscriber(previous, player);
+        return true;
+    }
+
+    public Set<UUID> getSubscribers(int handle) {
+        var players = this.subscribers.get(handle);
+        return players == null ? Collections.emptySet() : Collections.unmodifiableSet(players);
+    }
+
+    public void forEach(ObjIntConsumer<UUID> consumer) {
+        for (Object2IntMap.Entry<UUID> entry : this.subscriptions.object2IntEntrySet()) {
+            consumer.accept(entry.getKey(), entry.getIntValue());
+        }
+    }
+
+    private void removeSubscriber(int handle, UUID player) {
+        var players = this.subscribers.get(handle);
+        if (players != null && players.remove(player) && players.isEmpty()) {
+            this.subscribers.remove(handle);
+        }
+    }
+}